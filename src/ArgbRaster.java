@@ -0,0 +1,119 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * ArgbRaster gives direct access to the packed int pixel data behind a
+ * BufferedImage, so image passes can index an int[] instead of calling
+ * getRGB for every pixel. Images that are not already stored as packed ints
+ * are copied once, when the raster is created, with a single bulk getRGB
+ * call, so every pixel holds exactly the ARGB value getRGB(x, y) returns
+ * (including the conversion of gray color spaces to sRGB).
+ */
+
+public class ArgbRaster {
+	
+	/** The packed pixel data (shared with the image unless it had to be converted). */
+	private final int[] data;
+	
+	/** The index in data of pixel (0, 0). */
+	private final int offset;
+	
+	/** The distance in data between vertically adjacent pixels. */
+	private final int stride;
+	
+	/** The width of the image in pixels. */
+	private final int width;
+	
+	/** The height of the image in pixels. */
+	private final int height;
+	
+	/** The bits of each packed pixel that hold color (alpha is dropped for RGB images). */
+	private final int mask;
+	
+	/**
+	 * Constructs a new ArgbRaster over the pixels of <i>img</i>.
+	 * 
+	 * @param img The image whose pixels to access.
+	 * @throws NullPointerException if img is null.
+	 */
+	public ArgbRaster(BufferedImage img) {
+		this.width = img.getWidth();
+		this.height = img.getHeight();
+		int type = img.getType();
+		if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+			// getRGB converts through the image's color space, as getRGB(x, y) does
+			this.data = img.getRGB(0, 0, width, height, null, 0, width);
+			this.offset = 0;
+			this.stride = width;
+			this.mask = 0xFFFFFFFF;
+			return;
+		}
+		WritableRaster raster = img.getRaster();
+		DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+		SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		this.data = buffer.getData();
+		this.stride = sm.getScanlineStride();
+		// sub-images share their parent's buffer, shifted by the sample model translation
+		this.offset = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+				- raster.getSampleModelTranslateX();
+		this.mask = type == BufferedImage.TYPE_INT_RGB ? 0x00FFFFFF : 0xFFFFFFFF;
+	}
+	
+	/**
+	 * Returns the packed pixel data; pixel (x, y) is at
+	 * getOffset() + y * getStride() + x.
+	 * 
+	 * @return the pixel data backing this raster.
+	 */
+	public int[] getData() {
+		return data;
+	}
+	
+	/**
+	 * Returns the index of pixel (0, 0) in getData().
+	 * 
+	 * @return the offset of the first pixel.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+	
+	/**
+	 * Returns the distance in getData() between vertically adjacent pixels.
+	 * 
+	 * @return the scanline stride.
+	 */
+	public int getStride() {
+		return stride;
+	}
+	
+	/**
+	 * Returns the width of this raster.
+	 * 
+	 * @return the width in pixels.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Returns the height of this raster.
+	 * 
+	 * @return the height in pixels.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns the mask selecting the bits of a packed pixel that are compared
+	 * against a color (0x00FFFFFF when the image has no alpha channel).
+	 * 
+	 * @return the color mask.
+	 */
+	public int getMask() {
+		return mask;
+	}
+}
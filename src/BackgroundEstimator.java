@@ -0,0 +1,101 @@
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * BackgroundEstimator guesses the background color of an image from a sparse
+ * sample of its pixels, for callers that do not know it up front.
+ * 
+ * At most SAMPLES x SAMPLES pixels are sampled on an evenly strided grid and
+ * counted in a histogram of colors quantized to 4 bits per channel. The
+ * background is the most common exact color within the fullest bucket, on
+ * the assumption that background covers more of a page than any one ink
+ * color does. Sampling touches a tiny fraction of the pixels of any image
+ * larger than the grid.
+ */
+
+public class BackgroundEstimator {
+	
+	/** The number of sampled pixels along each dimension (at most). */
+	private static final int SAMPLES = 64;
+	
+	/** The number of bits kept of each color channel when bucketing samples. */
+	private static final int BITS = 4;
+	
+	/**
+	 * Returns the estimated background color of <i>img</i>, as packed ARGB.
+	 * 
+	 * @param img The image to estimate the background of.
+	 * @return The most common color of the sampled pixels (up to quantization).
+	 * @throws NullPointerException if img is null.
+	 * @throws IllegalArgumentException if img has no pixels.
+	 */
+	public static int estimate(BufferedImage img) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+		if (width == 0 || height == 0) {
+			throw new IllegalArgumentException("Image has no pixels...");
+		}
+		int stepX = Math.max(1, width / SAMPLES);
+		int stepY = Math.max(1, height / SAMPLES);
+		int[] samples = new int[((width + stepX - 1) / stepX) * ((height + stepY - 1) / stepY)];
+		int[] counts = new int[1 << (3 * BITS)];
+		int n = 0;
+		for (int y = stepY / 2; y < height; y += stepY) {
+			for (int x = stepX / 2; x < width; x += stepX) {
+				int p = img.getRGB(x, y);
+				samples[n++] = p;
+				counts[bucket(p)]++;
+			}
+		}
+		
+		// the fullest bucket, then the most common exact color in it
+		int best = 0;
+		for (int i = 1; i < counts.length; i++) {
+			if (counts[i] > counts[best]) {
+				best = i;
+			}
+		}
+		int[] members = new int[counts[best]];
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			if (bucket(samples[i]) == best) {
+				members[m++] = samples[i];
+			}
+		}
+		Arrays.sort(members);
+		int color = members[0];
+		int run = 0;
+		int bestRun = 0;
+		for (int i = 0; i < m; i++) {
+			run = i > 0 && members[i] == members[i - 1] ? run + 1 : 1;
+			if (run > bestRun) {
+				bestRun = run;
+				color = members[i];
+			}
+		}
+		return color;
+	}
+	
+	/**
+	 * Returns whether text on the background color <i>background</i> (packed
+	 * ARGB) is expected to be darker than it, i.e. whether the background is light.
+	 * 
+	 * @param background The packed ARGB background color.
+	 * @return true for dark-on-light text, false for light-on-dark text.
+	 */
+	public static boolean isDarkText(int background) {
+		return Binarizer.luminance((background >> 16) & 0xFF, (background >> 8) & 0xFF,
+				background & 0xFF) >= 128;
+	}
+	
+	/**
+	 * Returns the histogram bucket of the packed ARGB color <i>p</i>.
+	 */
+	private static int bucket(int p) {
+		int shift = 8 - BITS;
+		int r = (p >> 16 & 0xFF) >> shift;
+		int g = (p >> 8 & 0xFF) >> shift;
+		int b = (p & 0xFF) >> shift;
+		return (r << (2 * BITS)) | (g << BITS) | b;
+	}
+}
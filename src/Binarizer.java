@@ -0,0 +1,231 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Binarizer reduces images to BinaryImages in one of two modes (see Mode):
+ * by exact comparison with the background color, or by adaptive thresholding
+ * against the brightness of each pixel's neighborhood.
+ * 
+ * The pixel data is read straight out of the image's data buffer and
+ * compared as packed ints, 64 pixels at a time building one word of the
+ * result, with no per-pixel getRGB calls and no Color objects. Images
+ * stored as packed ints (TYPE_INT_ARGB, TYPE_INT_RGB) and as interleaved bytes
+ * (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR, as ImageIO decodes most PNGs and JPEGs)
+ * are read in place; any other image is first converted to packed ARGB
+ * (see ArgbRaster).
+ */
+
+public class Binarizer {
+	
+	/** The ways a pixel can be judged to be text. */
+	public enum Mode {
+		/** A pixel is text iff its color differs from the background color. */
+		EXACT,
+		/**
+		 * A pixel is text iff it is more than THRESHOLD percent darker (or, on
+		 * dark backgrounds, lighter) than the mean brightness of the square
+		 * window around it, which tolerates lighting gradients, compression
+		 * noise and off-white paper (Bradley's adaptive thresholding).
+		 */
+		ADAPTIVE
+	}
+	
+	/** In ADAPTIVE mode, how many percent a pixel must differ from its window to be text. */
+	private static final int THRESHOLD = 15;
+	
+	/** In ADAPTIVE mode, the window side is 1/WINDOW of the larger image dimension. */
+	private static final int WINDOW = 8;
+	
+	/**
+	 * Returns <i>img</i> reduced to text and background pixels by exact
+	 * comparison (see Mode.EXACT), where the background is the packed ARGB
+	 * color <i>background</i>.
+	 * 
+	 * @param img The image to binarize.
+	 * @param background The packed ARGB color of the background.
+	 * @return The text pixels of img.
+	 * @throws NullPointerException if img is null.
+	 */
+	public static BinaryImage binarize(BufferedImage img, int background) {
+		int type = img.getType();
+		if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR) {
+			return binarizeBytes(img, background);
+		}
+		return binarizeInts(new ArgbRaster(img), background);
+	}
+	
+	/**
+	 * Returns <i>img</i> reduced to text and background pixels by adaptive
+	 * thresholding (see Mode.ADAPTIVE). The mean brightness of any window
+	 * costs O(1) from a summed-area table of the image's luminance, so the
+	 * whole image is binarized in two linear passes with a single allocation
+	 * besides the result.
+	 * 
+	 * @param img The image to binarize.
+	 * @param darkText Whether the text is darker than the background (as
+	 * 		  opposed to lighter).
+	 * @return The text pixels of img.
+	 * @throws NullPointerException if img is null.
+	 */
+	public static BinaryImage binarizeAdaptive(BufferedImage img, boolean darkText) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+		long[] sums = integralLuminance(img);
+		int half = Math.max(width, height) / WINDOW / 2;
+		
+		BinaryImage result = new BinaryImage(width, height);
+		long[] words = result.getWords();
+		int wordsPerRow = result.getWordsPerRow();
+		int stride = width + 1;
+		for (int y = 0; y < height; y++) {
+			int y0 = Math.max(0, y - half);
+			int y1 = Math.min(height, y + half + 1);
+			for (int w = 0, x = 0; w < wordsPerRow; w++) {
+				long bits = 0L;
+				for (int bit = 0; bit < Long.SIZE && x < width; bit++, x++) {
+					int x0 = Math.max(0, x - half);
+					int x1 = Math.min(width, x + half + 1);
+					long sum = sums[y1 * stride + x1] - sums[y0 * stride + x1]
+							- sums[y1 * stride + x0] + sums[y0 * stride + x0];
+					long area = (long) (x1 - x0) * (y1 - y0);
+					long luminance = sums[(y + 1) * stride + x + 1] - sums[y * stride + x + 1]
+							- sums[(y + 1) * stride + x] + sums[y * stride + x];
+					long scaled = luminance * area * 100;
+					boolean text = darkText ? scaled < sum * (100 - THRESHOLD)
+							: scaled > sum * (100 + THRESHOLD);
+					bits |= (long) (text ? 1 : 0) << bit;
+				}
+				words[y * wordsPerRow + w] = bits;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the summed-area table of the luminance (0 to 255) of <i>img</i>:
+	 * entry (y * (width + 1) + x) is the total luminance of the pixels above
+	 * and to the left of (x, y), with an extra row and column of zeros.
+	 * Entries are longs: an int would overflow once a window's total passes
+	 * 2^31, i.e. on images over about 23k pixels on the longer side.
+	 */
+	private static long[] integralLuminance(BufferedImage img) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+		int stride = width + 1;
+		long[] sums = new long[stride * (height + 1)];
+		int type = img.getType();
+		if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR) {
+			WritableRaster raster = img.getRaster();
+			PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+			DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+			byte[] data = buffer.getData();
+			int pixelStride = sm.getPixelStride();
+			int rowStride = sm.getScanlineStride();
+			int offset = buffer.getOffset() - raster.getSampleModelTranslateY() * rowStride
+					- raster.getSampleModelTranslateX() * pixelStride;
+			int[] bands = sm.getBandOffsets();
+			for (int y = 0, row = offset; y < height; y++, row += rowStride) {
+				long rowSum = 0;
+				for (int x = 0, i = row; x < width; x++, i += pixelStride) {
+					rowSum += luminance(data[i + bands[0]] & 0xFF, data[i + bands[1]] & 0xFF,
+							data[i + bands[2]] & 0xFF);
+					sums[(y + 1) * stride + x + 1] = sums[y * stride + x + 1] + rowSum;
+				}
+			}
+		} else {
+			ArgbRaster raster = new ArgbRaster(img);
+			int[] data = raster.getData();
+			for (int y = 0, row = raster.getOffset(); y < height; y++, row += raster.getStride()) {
+				long rowSum = 0;
+				for (int x = 0; x < width; x++) {
+					int p = data[row + x];
+					rowSum += luminance((p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+					sums[(y + 1) * stride + x + 1] = sums[y * stride + x + 1] + rowSum;
+				}
+			}
+		}
+		return sums;
+	}
+	
+	/**
+	 * Returns the luminance (0 to 255) of the color (<i>r</i>, <i>g</i>, <i>b</i>).
+	 * 
+	 * @param r The red component, 0 to 255.
+	 * @param g The green component, 0 to 255.
+	 * @param b The blue component, 0 to 255.
+	 * @return The luminance of the color.
+	 */
+	public static int luminance(int r, int g, int b) {
+		return (r * 77 + g * 150 + b * 29) >> 8;
+	}
+	
+	/**
+	 * Returns the pixels of <i>raster</i> that differ from <i>background</i>.
+	 */
+	private static BinaryImage binarizeInts(ArgbRaster raster, int background) {
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+		int[] data = raster.getData();
+		int stride = raster.getStride();
+		int mask = raster.getMask();
+		int bg = background & mask;
+		BinaryImage result = new BinaryImage(width, height);
+		long[] words = result.getWords();
+		int wordsPerRow = result.getWordsPerRow();
+		for (int y = 0, row = raster.getOffset(); y < height; y++, row += stride) {
+			for (int w = 0, x = 0; w < wordsPerRow; w++) {
+				long bits = 0L;
+				for (int bit = 0; bit < Long.SIZE && x < width; bit++, x++) {
+					bits |= (long) (((data[row + x] & mask) ^ bg) == 0 ? 0 : 1) << bit;
+				}
+				words[y * wordsPerRow + w] = bits;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the pixels of the 3- or 4-byte interleaved image <i>img</i>
+	 * that differ from <i>background</i>.
+	 */
+	private static BinaryImage binarizeBytes(BufferedImage img, int background) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+		WritableRaster raster = img.getRaster();
+		PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) raster.getSampleModel();
+		DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+		byte[] data = buffer.getData();
+		int pixelStride = sm.getPixelStride();
+		int stride = sm.getScanlineStride();
+		// sub-images share their parent's buffer, shifted by the sample model translation
+		int offset = buffer.getOffset() - raster.getSampleModelTranslateY() * stride
+				- raster.getSampleModelTranslateX() * pixelStride;
+		
+		// bands are red, green, blue (and alpha), at these offsets within a pixel
+		int[] bands = sm.getBandOffsets();
+		int r = bands[0], g = bands[1], b = bands[2];
+		boolean alpha = bands.length > 3;
+		int a = alpha ? bands[3] : 0;
+		int bg = alpha ? background : background & 0x00FFFFFF;
+		
+		BinaryImage result = new BinaryImage(width, height);
+		long[] words = result.getWords();
+		int wordsPerRow = result.getWordsPerRow();
+		for (int y = 0, row = offset; y < height; y++, row += stride) {
+			for (int w = 0, x = 0, i = row; w < wordsPerRow; w++) {
+				long bits = 0L;
+				for (int bit = 0; bit < Long.SIZE && x < width; bit++, x++, i += pixelStride) {
+					int p = (data[i + r] & 0xFF) << 16 | (data[i + g] & 0xFF) << 8 | (data[i + b] & 0xFF);
+					if (alpha) {
+						p |= (data[i + a] & 0xFF) << 24;
+					}
+					bits |= (long) ((p ^ bg) == 0 ? 0 : 1) << bit;
+				}
+				words[y * wordsPerRow + w] = bits;
+			}
+		}
+		return result;
+	}
+}
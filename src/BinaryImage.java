@@ -0,0 +1,248 @@
+/**
+ * BinaryImage is an image reduced to two colors: every pixel is either text
+ * or background. Pixels are bit-packed in row-major order, so later stages
+ * can test, count and skip 64 pixels at a time: the pixel at (x, y) is bit
+ * (x % 64) of word (y * getWordsPerRow() + x / 64), and is set iff the pixel
+ * is text. Bits past the width of a row are always clear.
+ */
+
+public class BinaryImage {
+	
+	/** The packed pixels, getWordsPerRow() words per row. */
+	private final long[] words;
+	
+	/** The number of words holding each row. */
+	private final int wordsPerRow;
+	
+	/** The width of the image in pixels. */
+	private final int width;
+	
+	/** The height of the image in pixels. */
+	private final int height;
+	
+	/**
+	 * Constructs a new BinaryImage of the given dimensions with no text pixels.
+	 * 
+	 * @param width The width of the image in pixels.
+	 * @param height The height of the image in pixels.
+	 * @throws IllegalArgumentException if either dimension is negative.
+	 */
+	public BinaryImage(int width, int height) {
+		this(width, height, new long[checkedSize(width, height)]);
+	}
+	
+	/**
+	 * Constructs a new BinaryImage of the given dimensions over the packed
+	 * pixels <i>words</i> (laid out as described above; not copied).
+	 * 
+	 * @param width The width of the image in pixels.
+	 * @param height The height of the image in pixels.
+	 * @param words The packed pixels.
+	 * @throws NullPointerException if words is null.
+	 * @throws IllegalArgumentException if either dimension is negative or words
+	 * 		   does not hold exactly height * wordsPerRow(width) words.
+	 */
+	public BinaryImage(int width, int height, long[] words) {
+		if (words.length != checkedSize(width, height)) {
+			throw new IllegalArgumentException("Expected " + checkedSize(width, height) + " words...");
+		}
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = wordsPerRow(width);
+		this.words = words;
+	}
+	
+	/**
+	 * Returns the number of words holding each row of an image <i>width</i>
+	 * pixels wide.
+	 * 
+	 * @param width The width of the image in pixels.
+	 * @return the number of words per row.
+	 */
+	public static int wordsPerRow(int width) {
+		return (width + Long.SIZE - 1) >>> 6;
+	}
+	
+	/**
+	 * Returns whether the pixel at (x, y) is text.
+	 * 
+	 * @param x The column of the pixel.
+	 * @param y The row of the pixel.
+	 * @requires 0 <= x < getWidth() and 0 <= y < getHeight().
+	 * @return true iff the pixel is text.
+	 */
+	public boolean isText(int x, int y) {
+		return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+	
+	/**
+	 * Marks the pixel at (x, y) as text.
+	 * 
+	 * @param x The column of the pixel.
+	 * @param y The row of the pixel.
+	 * @requires 0 <= x < getWidth() and 0 <= y < getHeight().
+	 */
+	public void set(int x, int y) {
+		words[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+	}
+	
+	/**
+	 * Returns the number of text pixels in row <i>y</i> with columns in
+	 * [<i>from</i>, <i>to</i>), counted a word at a time.
+	 * 
+	 * @param y The row to count in.
+	 * @param from The first column to count (inclusive).
+	 * @param to The last column to count (exclusive).
+	 * @requires 0 <= y < getHeight() and 0 <= from, to <= getWidth().
+	 * @return the number of text pixels in the range (0 if from >= to).
+	 */
+	public int count(int y, int from, int to) {
+		if (from >= to) {
+			return 0;
+		}
+		int base = y * wordsPerRow;
+		int first = from >>> 6;
+		int last = (to - 1) >>> 6;
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> (63 - ((to - 1) & 63));
+		if (first == last) {
+			return Long.bitCount(words[base + first] & firstMask & lastMask);
+		}
+		int n = Long.bitCount(words[base + first] & firstMask);
+		for (int w = first + 1; w < last; w++) {
+			n += Long.bitCount(words[base + w]);
+		}
+		return n + Long.bitCount(words[base + last] & lastMask);
+	}
+	
+	/**
+	 * Replaces the pixels of the region of this image at (<i>x0</i>,
+	 * <i>y0</i>) the size of <i>src</i> with the pixels of src, a word at a time.
+	 * 
+	 * @param src The image to copy.
+	 * @param x0 The column the left edge of src goes to.
+	 * @param y0 The row the top edge of src goes to.
+	 * @throws NullPointerException if src is null.
+	 * @requires src lies within this image once moved to (x0, y0).
+	 */
+	public void paste(BinaryImage src, int x0, int y0) {
+		if (src.width == 0) {
+			return;
+		}
+		int first = x0 >>> 6;
+		int last = (x0 + src.width - 1) >>> 6;
+		long firstMask = -1L << x0;
+		long lastMask = -1L >>> (63 - ((x0 + src.width - 1) & 63));
+		int shift = x0 & 63;
+		for (int y = 0; y < src.height; y++) {
+			int row = (y0 + y) * wordsPerRow;
+			// clear the destination columns, then OR in the shifted source words
+			if (first == last) {
+				words[row + first] &= ~(firstMask & lastMask);
+			} else {
+				words[row + first] &= ~firstMask;
+				for (int w = first + 1; w < last; w++) {
+					words[row + w] = 0L;
+				}
+				words[row + last] &= ~lastMask;
+			}
+			int srcRow = y * src.wordsPerRow;
+			for (int w = 0; w < src.wordsPerRow; w++) {
+				long bits = src.words[srcRow + w];
+				if (bits == 0) {
+					continue;
+				}
+				int i = row + first + w;
+				words[i] |= bits << shift;
+				if (shift != 0 && first + w + 1 <= last) {
+					words[i + 1] |= bits >>> (Long.SIZE - shift);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns a copy of the region of this image at (<i>x0</i>, <i>y0</i>)
+	 * of the given dimensions, copied a word at a time.
+	 * 
+	 * @param x0 The left column of the region.
+	 * @param y0 The top row of the region.
+	 * @param width The width of the region in pixels.
+	 * @param height The height of the region in pixels.
+	 * @return a new image of the region.
+	 * @throws IllegalArgumentException if either dimension is negative.
+	 * @requires the region lies within this image.
+	 */
+	public BinaryImage crop(int x0, int y0, int width, int height) {
+		BinaryImage result = new BinaryImage(width, height);
+		if (width == 0) {
+			return result;
+		}
+		int first = x0 >>> 6;
+		int last = (x0 + width - 1) >>> 6;
+		int shift = x0 & 63;
+		long lastMask = -1L >>> (63 - ((width - 1) & 63));
+		for (int y = 0; y < height; y++) {
+			int row = (y0 + y) * wordsPerRow + first;
+			int resultRow = y * result.wordsPerRow;
+			// each result word is the source words it straddles shifted into place
+			for (int w = 0; w < result.wordsPerRow; w++) {
+				long bits = words[row + w] >>> shift;
+				if (shift != 0 && first + w + 1 <= last) {
+					bits |= words[row + w + 1] << (Long.SIZE - shift);
+				}
+				result.words[resultRow + w] = bits;
+			}
+			result.words[resultRow + result.wordsPerRow - 1] &= lastMask;
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the packed pixels of this image (not a copy).
+	 * 
+	 * @return the words holding the pixels, getWordsPerRow() words per row.
+	 */
+	public long[] getWords() {
+		return words;
+	}
+	
+	/**
+	 * Returns the number of words holding each row of this image.
+	 * 
+	 * @return the number of words per row.
+	 */
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+	
+	/**
+	 * Returns the width of this image.
+	 * 
+	 * @return the width in pixels.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Returns the height of this image.
+	 * 
+	 * @return the height in pixels.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Returns the number of words needed for an image of the given dimensions.
+	 * 
+	 * @throws IllegalArgumentException if either dimension is negative.
+	 */
+	private static int checkedSize(int width, int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("Dimensions cannot be negative...");
+		}
+		return Math.multiplyExact(wordsPerRow(width), height);
+	}
+}
@@ -0,0 +1,374 @@
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * ComponentLabeler splits the text of a BinaryImage into glyphs by labeling
+ * its 8-connected components, so characters that overlap horizontally (as
+ * handwriting often does) are still separated.
+ * 
+ * Labeling takes two passes over the text pixels, found a word at a time in
+ * the packed image so background is skipped 64 pixels at once. The first
+ * pass assigns provisional labels and records which ones touch in a
+ * path-compressed union-find forest stored in a plain int array; the second
+ * resolves each pixel's label to its component to collect bounding boxes. A
+ * component lying just above or below one at least twice as tall, in the
+ * column of its center (such as the dot of an 'i'), is merged into it;
+ * components are indexed by column so this too takes time linear in the
+ * number of text pixels. Glyphs are numbered from left to right.
+ */
+
+public class ComponentLabeler {
+	
+	/** The provisional label of each pixel in row-major order (0 for background). */
+	private final int[] labels;
+	
+	/** The glyph each provisional label belongs to (-1 for background). */
+	private final int[] glyphs;
+	
+	/** The bounding box of each glyph, ordered by left edge. */
+	private final Rectangle[] boxes;
+	
+	/** Whether the bounding box of each glyph holds no text of any other glyph. */
+	private final boolean[] isolated;
+	
+	/** The labeled image. */
+	private final BinaryImage img;
+	
+	/** The width of the labeled image. */
+	private final int width;
+	
+	/**
+	 * Constructs a new ComponentLabeler holding the glyphs of <i>img</i>.
+	 * 
+	 * @param img The binarized image to label.
+	 * @throws NullPointerException if img is null.
+	 */
+	public ComponentLabeler(BinaryImage img) {
+		this.img = img;
+		this.width = img.getWidth();
+		int height = img.getHeight();
+		this.labels = new int[width * height];
+		
+		// first pass: provisional labels, merging labels of touching neighbors
+		long[] words = img.getWords();
+		int wordsPerRow = img.getWordsPerRow();
+		int[] parent = new int[64];
+		int next = 1;
+		for (int y = 0; y < height; y++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				// visit only the text pixels, skipping background 64 pixels at a time
+				for (long bits = words[y * wordsPerRow + w]; bits != 0; bits &= bits - 1) {
+					int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+					int i = y * width + x;
+					int label = 0;
+					if (x > 0) {
+						label = link(parent, label, labels[i - 1]);
+					}
+					if (y > 0) {
+						if (x > 0) {
+							label = link(parent, label, labels[i - width - 1]);
+						}
+						label = link(parent, label, labels[i - width]);
+						if (x < width - 1) {
+							label = link(parent, label, labels[i - width + 1]);
+						}
+					}
+					if (label == 0) {
+						if (next == parent.length) {
+							parent = Arrays.copyOf(parent, next * 2);
+						}
+						parent[next] = next;
+						label = next++;
+					}
+					labels[i] = label;
+				}
+			}
+		}
+		
+		// number the components (one per union-find root)
+		int[] component = new int[next];
+		int count = 0;
+		component[0] = -1;
+		for (int label = 1; label < next; label++) {
+			int root = find(parent, label);
+			component[label] = root == label ? count++ : component[root];
+		}
+		
+		// second pass: bounding box of every component
+		int[] minX = new int[count], minY = new int[count];
+		int[] maxX = new int[count], maxY = new int[count];
+		Arrays.fill(minX, Integer.MAX_VALUE);
+		Arrays.fill(minY, Integer.MAX_VALUE);
+		Arrays.fill(maxX, -1);
+		Arrays.fill(maxY, -1);
+		for (int y = 0; y < height; y++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				for (long bits = words[y * wordsPerRow + w]; bits != 0; bits &= bits - 1) {
+					int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+					int c = component[labels[y * width + x]];
+					minX[c] = Math.min(minX[c], x);
+					maxX[c] = Math.max(maxX[c], x);
+					minY[c] = Math.min(minY[c], y);
+					maxY[c] = Math.max(maxY[c], y);
+				}
+			}
+		}
+		
+		// index the components by column: every component spans each column
+		// between its left and right edges (it is connected), so the lists hold
+		// no more entries than there are text pixels. Components are numbered in
+		// order of their top row, so each column's list is ordered top to bottom.
+		int[] start = new int[width + 1];
+		for (int c = 0; c < count; c++) {
+			start[minX[c]]++;
+			start[maxX[c] + 1]--;
+		}
+		for (int x = 0, covering = 0, total = 0; x <= width; x++) {
+			int entries = total;
+			covering += start[x];
+			total += covering;
+			start[x] = entries;
+		}
+		int[] column = new int[start[width]];
+		int[] fill = Arrays.copyOf(start, width);
+		int[] position = new int[count];
+		for (int c = 0; c < count; c++) {
+			int centerX = (minX[c] + maxX[c]) / 2;
+			for (int x = minX[c]; x <= maxX[c]; x++) {
+				if (x == centerX) {
+					position[c] = fill[x];
+				}
+				column[fill[x]++] = c;
+			}
+		}
+		
+		// merge each small mark into the component nearest it in its center
+		// column, if that one is at least twice as tall and lies strictly (and
+		// not far) above or below it
+		int[] target = new int[count];
+		for (int c = 0; c < count; c++) {
+			target[c] = c;
+			int centerX = (minX[c] + maxX[c]) / 2;
+			int heightC = maxY[c] - minY[c] + 1;
+			int best = Integer.MAX_VALUE;
+			for (int i = position[c] - 1; i <= position[c] + 1; i += 2) {
+				if (i < start[centerX] || i >= start[centerX + 1]) {
+					continue;
+				}
+				int p = column[i];
+				int heightP = maxY[p] - minY[p] + 1;
+				int gap = Math.max(minY[c] - maxY[p], minY[p] - maxY[c]) - 1;
+				if (2 * heightC <= heightP && 0 <= gap && gap <= heightP / 2 && gap < best) {
+					target[c] = p;
+					best = gap;
+				}
+			}
+		}
+		for (int c = 0; c < count; c++) {
+			int t = c;
+			while (target[t] != t) {
+				t = target[t];
+			}
+			target[c] = t;
+			minX[t] = Math.min(minX[t], minX[c]);
+			maxX[t] = Math.max(maxX[t], maxX[c]);
+			minY[t] = Math.min(minY[t], minY[c]);
+			maxY[t] = Math.max(maxY[t], maxY[c]);
+		}
+		
+		// order the surviving components by left edge
+		long[] order = new long[count];
+		int glyphCount = 0;
+		for (int c = 0; c < count; c++) {
+			if (target[c] == c) {
+				order[glyphCount++] = ((long) minX[c] << 32) | c;
+			}
+		}
+		Arrays.sort(order, 0, glyphCount);
+		int[] glyphOf = new int[count];
+		this.boxes = new Rectangle[glyphCount];
+		for (int g = 0; g < glyphCount; g++) {
+			int c = (int) order[g];
+			glyphOf[c] = g;
+			boxes[g] = new Rectangle(minX[c], minY[c], maxX[c] - minX[c] + 1, maxY[c] - minY[c] + 1);
+		}
+		this.glyphs = new int[next];
+		glyphs[0] = -1;
+		for (int label = 1; label < next; label++) {
+			glyphs[label] = glyphOf[target[component[label]]];
+		}
+		
+		// find the glyphs whose boxes hold text of another glyph (each text
+		// pixel is usually in a single box, so this visits it about once)
+		this.isolated = new boolean[glyphCount];
+		for (int g = 0; g < glyphCount; g++) {
+			isolated[g] = ownsBox(g);
+		}
+	}
+	
+	/**
+	 * Returns the image this ComponentLabeler labeled.
+	 * 
+	 * @return the labeled image.
+	 */
+	public BinaryImage getImage() {
+		return img;
+	}
+	
+	/**
+	 * Returns the number of glyphs found.
+	 * 
+	 * @return the number of glyphs.
+	 */
+	public int getCount() {
+		return boxes.length;
+	}
+	
+	/**
+	 * Returns the bounding box of glyph <i>glyph</i>.
+	 * 
+	 * @param glyph The index of the glyph, in [0, getCount()).
+	 * @return the smallest rectangle containing every pixel of the glyph.
+	 */
+	public Rectangle getBox(int glyph) {
+		return new Rectangle(boxes[glyph]);
+	}
+	
+	/**
+	 * Sets <i>result</i> to the bounding box of glyph <i>glyph</i>.
+	 * 
+	 * @param glyph The index of the glyph, in [0, getCount()).
+	 * @param result The rectangle to overwrite.
+	 * @return result.
+	 * @throws NullPointerException if result is null.
+	 */
+	public Rectangle getBox(int glyph, Rectangle result) {
+		result.setBounds(boxes[glyph]);
+		return result;
+	}
+	
+	/**
+	 * Returns whether every text pixel in the bounding box of glyph
+	 * <i>glyph</i> belongs to the glyph (no other glyph reaches into its box).
+	 * 
+	 * @param glyph The index of the glyph, in [0, getCount()).
+	 * @return true iff the glyph's box holds no text of any other glyph.
+	 */
+	public boolean isIsolated(int glyph) {
+		return isolated[glyph];
+	}
+	
+	/**
+	 * Returns the pixels of glyph <i>glyph</i> alone, as an image the size of
+	 * its bounding box (whose top left corner becomes (0, 0)).
+	 * 
+	 * @param glyph The index of the glyph, in [0, getCount()).
+	 * @return the glyph's pixels, without those of any glyph overlapping it.
+	 */
+	public BinaryImage getMask(int glyph) {
+		Rectangle box = boxes[glyph];
+		BinaryImage mask = new BinaryImage(box.width, box.height);
+		getMask(glyph, mask);
+		return mask;
+	}
+	
+	/**
+	 * Draws the pixels of glyph <i>glyph</i> alone into the top left corner of
+	 * <i>mask</i> (as getMask(glyph) would return them), first clearing the
+	 * region of mask the size of the glyph's bounding box. The rest of mask
+	 * is left as it was.
+	 * 
+	 * @param glyph The index of the glyph, in [0, getCount()).
+	 * @param mask The image to draw into.
+	 * @throws NullPointerException if mask is null.
+	 * @requires mask is at least as wide and as tall as the glyph's box.
+	 */
+	public void getMask(int glyph, BinaryImage mask) {
+		Rectangle box = boxes[glyph];
+		long[] maskWords = mask.getWords();
+		int maskWordsPerRow = mask.getWordsPerRow();
+		int boxWordsPerRow = BinaryImage.wordsPerRow(box.width);
+		for (int y = 0; y < box.height; y++) {
+			Arrays.fill(maskWords, y * maskWordsPerRow, y * maskWordsPerRow + boxWordsPerRow, 0L);
+		}
+		long[] words = img.getWords();
+		int wordsPerRow = img.getWordsPerRow();
+		int right = box.x + box.width;
+		for (int y = box.y; y < box.y + box.height; y++) {
+			for (int w = box.x >>> 6; w <= (right - 1) >>> 6; w++) {
+				for (long bits = words[y * wordsPerRow + w]; bits != 0; bits &= bits - 1) {
+					int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+					if (x >= box.x && x < right && getGlyph(x, y) == glyph) {
+						mask.set(x - box.x, y - box.y);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the glyph the pixel at (x, y) belongs to.
+	 * 
+	 * @param x The column of the pixel.
+	 * @param y The row of the pixel.
+	 * @requires (x, y) lies within the labeled image.
+	 * @return the index of the pixel's glyph, or -1 if the pixel is background.
+	 */
+	public int getGlyph(int x, int y) {
+		return glyphs[labels[y * width + x]];
+	}
+	
+	/**
+	 * Returns whether every text pixel within the bounding box of glyph
+	 * <i>glyph</i> belongs to that glyph.
+	 */
+	private boolean ownsBox(int glyph) {
+		Rectangle box = boxes[glyph];
+		long[] words = img.getWords();
+		int wordsPerRow = img.getWordsPerRow();
+		int right = box.x + box.width;
+		for (int y = box.y; y < box.y + box.height; y++) {
+			for (int w = box.x >>> 6; w <= (right - 1) >>> 6; w++) {
+				for (long bits = words[y * wordsPerRow + w]; bits != 0; bits &= bits - 1) {
+					int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+					if (x >= box.x && x < right && getGlyph(x, y) != glyph) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the label for a pixel touching pixels labeled <i>a</i> and
+	 * <i>b</i> (0 meaning unlabeled), recording that the two are connected.
+	 */
+	private static int link(int[] parent, int a, int b) {
+		if (b == 0) {
+			return a;
+		}
+		if (a == 0) {
+			return b;
+		}
+		int ra = find(parent, a);
+		int rb = find(parent, b);
+		if (ra < rb) {
+			parent[rb] = ra;
+			return ra;
+		}
+		parent[ra] = rb;
+		return rb;
+	}
+	
+	/**
+	 * Returns the root of <i>label</i>, halving the path to it along the way.
+	 */
+	private static int find(int[] parent, int label) {
+		while (parent[label] != label) {
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		return label;
+	}
+}
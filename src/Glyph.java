@@ -0,0 +1,247 @@
+import java.util.Arrays;
+
+/**
+ * Glyph is a normalized character pattern on a square grid of dimensions
+ * size x size, stored as a fixed-width bit vector. The pixel at (x, y) is bit
+ * (y * size + x) of the vector, packed 64 bits per word. On the default
+ * SIZE x SIZE grid bits 0 through 63 live in the low word and the remaining
+ * bits live in the high word, so a whole 9x9 glyph fits in two longs.
+ * 
+ * Languages may store their patterns on finer grids as well (see pyramid):
+ * every language is matched on the SIZE x SIZE grid first and on the finer
+ * grids only when that is not enough to tell characters apart.
+ */
+
+public class Glyph {
+	
+	/** The width and height (in cells) of the default (coarsest) grid. */
+	public static final int SIZE = 9;
+	
+	/** The largest width and height (in cells) of any grid. */
+	public static final int MAX_SIZE = 64;
+	
+	/** The width and height (in cells) of the grid of this Glyph. */
+	private final int size;
+	
+	/** The bits of the pattern, 64 per word. */
+	private final long[] words;
+	
+	/**
+	 * Constructs a new, empty Glyph (no cells set) on the SIZE x SIZE grid.
+	 */
+	public Glyph() {
+		this(SIZE);
+	}
+	
+	/**
+	 * Constructs a new, empty Glyph (no cells set) on the <i>size</i> x
+	 * <i>size</i> grid.
+	 * 
+	 * @param size The width and height of the grid, in [1, MAX_SIZE].
+	 * @throws IllegalArgumentException if size is out of range.
+	 */
+	public Glyph(int size) {
+		if (size < 1 || size > MAX_SIZE) {
+			throw new IllegalArgumentException("Illegal grid size: " + size);
+		}
+		this.size = size;
+		this.words = new long[wordCount(size)];
+	}
+	
+	/**
+	 * Constructs a new Glyph on the SIZE x SIZE grid from its two packed words.
+	 * 
+	 * @param lo Bits 0 through 63 of the pattern.
+	 * @param hi Bits 64 through (SIZE * SIZE - 1) of the pattern.
+	 */
+	public Glyph(long lo, long hi) {
+		this(SIZE);
+		words[0] = lo;
+		words[1] = hi;
+	}
+	
+	/**
+	 * Returns the number of words holding a pattern on the <i>size</i> x
+	 * <i>size</i> grid.
+	 * 
+	 * @param size The width and height of the grid.
+	 * @return the number of 64-bit words in the pattern.
+	 */
+	public static int wordCount(int size) {
+		return (size * size + Long.SIZE - 1) >>> 6;
+	}
+	
+	/**
+	 * Returns the grid sizes of the resolution pyramid of patterns drawn on the
+	 * <i>gridSize</i> x <i>gridSize</i> grid, coarsest first: SIZE, then
+	 * gridSize halved as often as it stays above SIZE, then gridSize itself.
+	 * For example, 9 gives {9}, 16 gives {9, 16} and 32 gives {9, 16, 32}.
+	 * 
+	 * @param gridSize The grid size of the patterns, in [SIZE, MAX_SIZE].
+	 * @return the grid size of every level of the pyramid, in increasing order.
+	 * @throws IllegalArgumentException if gridSize is out of range.
+	 */
+	public static int[] pyramid(int gridSize) {
+		if (gridSize < SIZE || gridSize > MAX_SIZE) {
+			throw new IllegalArgumentException("Illegal grid size: " + gridSize);
+		}
+		int levels = 1;
+		for (int s = gridSize; s > SIZE; s /= 2) {
+			levels++;
+		}
+		int[] sizes = new int[levels];
+		sizes[0] = SIZE;
+		for (int l = levels - 1, s = gridSize; l > 0; l--, s /= 2) {
+			sizes[l] = s;
+		}
+		return sizes;
+	}
+	
+	/**
+	 * Sets the cell at (x, y) of this Glyph.
+	 * 
+	 * @param x The column of the cell, in [0, getSize()).
+	 * @param y The row of the cell, in [0, getSize()).
+	 * @throws IllegalArgumentException if (x, y) is not on the grid.
+	 */
+	public void set(int x, int y) {
+		int bit = index(x, y);
+		words[bit >>> 6] |= 1L << bit;
+	}
+	
+	/**
+	 * Returns whether the cell at (x, y) of this Glyph is set.
+	 * 
+	 * @param x The column of the cell, in [0, getSize()).
+	 * @param y The row of the cell, in [0, getSize()).
+	 * @return true iff the cell is set.
+	 * @throws IllegalArgumentException if (x, y) is not on the grid.
+	 */
+	public boolean get(int x, int y) {
+		int bit = index(x, y);
+		return (words[bit >>> 6] & (1L << bit)) != 0;
+	}
+	
+	/**
+	 * Clears every cell of this Glyph.
+	 */
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+	
+	/**
+	 * Returns a copy of this Glyph scaled to the <i>size</i> x <i>size</i>
+	 * grid. Each cell of the copy covers an integer range of rows and columns
+	 * of this Glyph (as in GlyphNormalizer) and is set iff any of them is.
+	 * 
+	 * @param size The width and height of the new grid, in [1, MAX_SIZE].
+	 * @return the scaled pattern.
+	 * @throws IllegalArgumentException if size is out of range.
+	 */
+	public Glyph scale(int size) {
+		Glyph result = new Glyph(size);
+		for (int j = 0; j < size; j++) {
+			int y0 = j * this.size / size;
+			int y1 = Math.max((j + 1) * this.size / size, y0 + 1);
+			for (int k = 0; k < size; k++) {
+				int x0 = k * this.size / size;
+				int x1 = Math.max((k + 1) * this.size / size, x0 + 1);
+				search:
+				for (int y = y0; y < y1; y++) {
+					for (int x = x0; x < x1; x++) {
+						if (get(x, y)) {
+							result.set(k, j);
+							break search;
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the width and height (in cells) of the grid of this Glyph.
+	 * 
+	 * @return the grid size of the pattern.
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Returns the number of words holding the bits of this Glyph.
+	 * 
+	 * @return wordCount(getSize()).
+	 */
+	public int getWordCount() {
+		return words.length;
+	}
+	
+	/**
+	 * Returns word <i>w</i> of this Glyph (bits 64w through 64w + 63).
+	 * 
+	 * @param w The index of the word, in [0, getWordCount()).
+	 * @return the word of the pattern.
+	 */
+	public long getWord(int w) {
+		return words[w];
+	}
+	
+	/**
+	 * Returns bits 0 through 63 of this Glyph.
+	 * 
+	 * @return the low word of the pattern.
+	 */
+	public long getLo() {
+		return words[0];
+	}
+	
+	/**
+	 * Returns bits 64 through 127 of this Glyph (on the SIZE x SIZE grid, all
+	 * the remaining bits).
+	 * 
+	 * @return the high word of the pattern, or 0 if it has a single word.
+	 */
+	public long getHi() {
+		return words.length > 1 ? words[1] : 0L;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof Glyph)) {
+			return false;
+		}
+		Glyph other = (Glyph) o;
+		return size == other.size && Arrays.equals(words, other.words);
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * size + Arrays.hashCode(words);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				sb.append(get(x, y) ? '#' : '.');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the bit index of the cell at (x, y).
+	 * 
+	 * @throws IllegalArgumentException if (x, y) is not on the grid.
+	 */
+	private int index(int x, int y) {
+		if (x < 0 || x >= size || y < 0 || y >= size) {
+			throw new IllegalArgumentException("Cell off grid: (" + x + ", " + y + ")");
+		}
+		return y * size + x;
+	}
+}
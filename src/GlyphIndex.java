@@ -0,0 +1,170 @@
+/**
+ * GlyphIndex is a searchable set of character templates, each a Glyph pattern
+ * with the character it represents. Implementations may keep their templates
+ * on the heap (GlyphTable) or off it (MappedGlyphIndex).
+ *
+ * Every template is stored at each level of the resolution pyramid of the
+ * language's grid size (see Glyph.pyramid). Level 0 is always the coarse
+ * Glyph.SIZE x Glyph.SIZE grid, packed in two words, which is all nearest
+ * looks at; the finer levels refine the few candidates it cannot tell apart.
+ *
+ * Implementations need only give access to the words and characters of their
+ * templates; the searches are shared, built on getWord and getChar.
+ */
+
+public interface GlyphIndex {
+
+	/** The value returned when an index has no character for a pattern. */
+	int NOT_FOUND = -1;
+
+	/**
+	 * Returns the character of the template closest in Hamming distance to the
+	 * pattern packed in (<i>lo</i>, <i>hi</i>) (see Glyph) on the coarse grid,
+	 * or NOT_FOUND if this index is empty. Ties go to the template stored first.
+	 *
+	 * @param lo Bits 0 through 63 of the pattern.
+	 * @param hi The remaining bits of the pattern.
+	 * @return the character of the nearest template, or NOT_FOUND.
+	 */
+	default int nearest(long lo, long hi) {
+		int best = Integer.MAX_VALUE;
+		int bestT = -1;
+		for (int t = 0, n = size(); t < n; t++) {
+			// the low word holds most of the grid, so it alone usually rules a template out
+			int d = Long.bitCount(lo ^ getWord(t, 0, 0));
+			if (d >= best) {
+				continue;
+			}
+			d += Long.bitCount(hi ^ getWord(t, 0, 1));
+			if (d < best) {
+				best = d;
+				bestT = t;
+				if (d == 0) {
+					break;
+				}
+			}
+		}
+		return bestT < 0 ? NOT_FOUND : getChar(bestT);
+	}
+
+	/**
+	 * Returns the character of the template closest to <i>g</i> in Hamming
+	 * distance on the coarse grid, or NOT_FOUND if this index is empty.
+	 *
+	 * @param g The pattern to classify, on the Glyph.SIZE x Glyph.SIZE grid.
+	 * @return the character of the nearest template, or NOT_FOUND.
+	 * @throws NullPointerException if g is null.
+	 */
+	default int nearest(Glyph g) {
+		return nearest(g.getLo(), g.getHi());
+	}
+
+	/**
+	 * Fills <i>result</i> with the templates nearest to <i>g</i> on the coarse
+	 * grid, nearest first (ties in storage order), and <i>distances</i> with
+	 * their Hamming distances from g. Only templates at most <i>slack</i> farther
+	 * from g than the nearest one are candidates, and at most result.length
+	 * of them are kept.
+	 *
+	 * @param g The pattern to classify, on the Glyph.SIZE x Glyph.SIZE grid.
+	 * @param slack How much farther than the nearest template a candidate may be.
+	 * @param result The array to fill with the position of each candidate.
+	 * @param distances The array to fill with the distance of each candidate.
+	 * @return the number of candidates, or 0 if this index is empty.
+	 * @throws NullPointerException if any argument is null.
+	 * @requires distances.length >= result.length > 0 and slack >= 0.
+	 */
+	default int candidates(Glyph g, int slack, int[] result, int[] distances) {
+		int count = 0;
+		int best = Integer.MAX_VALUE;
+		for (int t = 0, n = size(); t < n; t++) {
+			int d = distance(t, g);
+			if (d - slack > best || (count == result.length && d >= distances[count - 1])) {
+				continue;
+			}
+			// insert in order of distance, after any template as near
+			int i = count < result.length ? count++ : count - 1;
+			for (; i > 0 && distances[i - 1] > d; i--) {
+				result[i] = result[i - 1];
+				distances[i] = distances[i - 1];
+			}
+			result[i] = t;
+			distances[i] = d;
+			if (d < best) {
+				best = d;
+				while (distances[count - 1] - slack > best) {
+					count--;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the Hamming distance between template <i>t</i> and <i>g</i> at
+	 * the level of the pyramid g is drawn on.
+	 *
+	 * @param t The position of the template, in [0, size()).
+	 * @param g The pattern to compare, on the grid of one of the levels.
+	 * @return the number of cells in which the template and g differ.
+	 * @throws NullPointerException if g is null.
+	 * @throws IllegalArgumentException if g is not on the grid of any level.
+	 */
+	default int distance(int t, Glyph g) {
+		if (t < 0 || t >= size()) {
+			throw new IndexOutOfBoundsException("No template " + t + "...");
+		}
+		int level = 0;
+		while (getLevelSize(level) != g.getSize()) {
+			if (++level == getLevelCount()) {
+				throw new IllegalArgumentException("No level of grid size " + g.getSize() + "...");
+			}
+		}
+		int d = 0;
+		for (int w = 0, n = g.getWordCount(); w < n; w++) {
+			d += Long.bitCount(g.getWord(w) ^ getWord(t, level, w));
+		}
+		return d;
+	}
+
+	/**
+	 * Returns word <i>w</i> of template <i>t</i> at level <i>level</i> of the
+	 * pyramid (at level 0, word 0 is the low word and word 1 the high word).
+	 *
+	 * @param t The position of the template, in [0, size()).
+	 * @param level The level, in [0, getLevelCount()).
+	 * @param w The word, in [0, Glyph.wordCount(getLevelSize(level))).
+	 * @return bits 64w through 64w + 63 of the template at that level.
+	 */
+	long getWord(int t, int level, int w);
+
+	/**
+	 * Returns the character of template <i>t</i>.
+	 *
+	 * @param t The position of the template, in [0, size()).
+	 * @return the character the template represents.
+	 */
+	char getChar(int t);
+
+	/**
+	 * Returns the number of levels of the pyramid the templates are stored at.
+	 *
+	 * @return the number of levels (1 if only the coarse grid is stored).
+	 */
+	int getLevelCount();
+
+	/**
+	 * Returns the grid size of level <i>level</i> of the pyramid.
+	 *
+	 * @param level The level, in [0, getLevelCount()).
+	 * @return the width and height (in cells) of the level's grid.
+	 */
+	int getLevelSize(int level);
+
+	/**
+	 * Returns the number of templates in this index.
+	 *
+	 * @return the number of templates.
+	 */
+	int size();
+}
@@ -0,0 +1,112 @@
+import java.awt.Rectangle;
+
+/**
+ * GlyphNormalizer scales the text pixels of a glyph down to a Glyph on an
+ * N x N grid, straight from the packed words of a BinaryImage.
+ * 
+ * The glyph's bounding box is centered in the minimum area square that
+ * contains it, and the square is split into N x N cells along integer
+ * boundaries (cell k of a side of L pixels covers pixels [k * L / N,
+ * (k + 1) * L / N), or at least one pixel when L < N). The text pixels
+ * of every row of a cell are counted with masked popcounts, and a cell is set
+ * iff at least 1/COVERAGE of its area is text. No intermediate image is drawn.
+ */
+
+public class GlyphNormalizer {
+	
+	/** The number of coverage table entries per cell of the grid side. */
+	public static final int TABLES = 6;
+	
+	/** A cell is set iff at least 1/COVERAGE of its pixels are text. */
+	private static final int COVERAGE = 16;
+	
+	/**
+	 * Returns the text pixels of <i>img</i> within <i>box</i> scaled down to a
+	 * Glyph on the Glyph.SIZE x Glyph.SIZE grid.
+	 * 
+	 * @param img The binarized image holding the glyph.
+	 * @param box The bounding box of the glyph.
+	 * @return The normalized pattern of the glyph.
+	 * @throws NullPointerException if either argument is null.
+	 * @requires box is non-empty and lies within img.
+	 */
+	public static Glyph normalize(BinaryImage img, Rectangle box) {
+		Glyph result = new Glyph();
+		normalize(img, box, result);
+		return result;
+	}
+	
+	/**
+	 * Sets <i>result</i> to the text pixels of <i>img</i> within <i>box</i>
+	 * scaled down to the grid of result.
+	 * 
+	 * @param img The binarized image holding the glyph.
+	 * @param box The bounding box of the glyph.
+	 * @param result The Glyph to overwrite with the normalized pattern.
+	 * @throws NullPointerException if any argument is null.
+	 * @requires box is non-empty and lies within img.
+	 */
+	public static void normalize(BinaryImage img, Rectangle box, Glyph result) {
+		normalize(img, box, result, new int[TABLES * result.getSize()]);
+	}
+	
+	/**
+	 * Sets <i>result</i> to the text pixels of <i>img</i> within <i>box</i>
+	 * scaled down to the grid of result, building the coverage tables in
+	 * <i>cells</i> rather than allocating them.
+	 * 
+	 * @param img The binarized image holding the glyph.
+	 * @param box The bounding box of the glyph.
+	 * @param result The Glyph to overwrite with the normalized pattern.
+	 * @param cells Scratch space of at least TABLES * result.getSize() ints.
+	 * @throws NullPointerException if any argument is null.
+	 * @requires box is non-empty and lies within img.
+	 */
+	public static void normalize(BinaryImage img, Rectangle box, Glyph result, int[] cells) {
+		assert box.width > 0 && box.height > 0;
+		int side = Math.max(box.width, box.height);
+		int x0 = box.x - (side - box.width) / 2;
+		int y0 = box.y - (side - box.height) / 2;
+		
+		// coverage tables: the pixel range of every cell column and row, clipped to the box
+		int size = result.getSize();
+		int cols = 0;
+		int rows = 3 * size;
+		cells(x0, side, box.x, box.x + box.width, size, cells, cols);
+		cells(y0, side, box.y, box.y + box.height, size, cells, rows);
+		
+		result.clear();
+		for (int j = 0; j < size; j++) {
+			int rowFrom = cells[rows + j];
+			int rowTo = cells[rows + size + j];
+			int rowSize = cells[rows + 2 * size + j];
+			for (int k = 0; k < size; k++) {
+				int colFrom = cells[cols + k];
+				int colTo = cells[cols + size + k];
+				int count = 0;
+				for (int y = rowFrom; y < rowTo; y++) {
+					count += img.count(y, colFrom, colTo);
+				}
+				if (count > 0 && count * COVERAGE >= cells[cols + 2 * size + k] * rowSize) {
+					result.set(k, j);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Fills in the pixel range of each of the <i>n</i> cells along one side
+	 * of the square starting at <i>start</i> and <i>side</i> pixels long: cell
+	 * k covers [table[offset + k], table[offset + n + k]) once clipped to
+	 * [<i>lo</i>, <i>hi</i>), and table[offset + 2n + k] pixels before clipping.
+	 */
+	private static void cells(int start, int side, int lo, int hi, int n, int[] table, int offset) {
+		for (int k = 0; k < n; k++) {
+			int a = start + k * side / n;
+			int b = Math.max(start + (k + 1) * side / n, a + 1);
+			table[offset + k] = Math.max(a, lo);
+			table[offset + n + k] = Math.min(b, hi);
+			table[offset + 2 * n + k] = b - a;
+		}
+	}
+}
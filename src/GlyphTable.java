@@ -0,0 +1,409 @@
+import java.util.Arrays;
+
+/**
+ * GlyphTable maps Glyph patterns to characters without boxing either side.
+ * 
+ * Templates are stored densely (one low word, one high word and one character
+ * per entry, in insertion order) and indexed by a primitive open-addressing
+ * hash table with linear probing, so an exact lookup costs one hash and a
+ * couple of word compares. Inexact patterns are classified by the linear
+ * scan of GlyphIndex for the template at the smallest Hamming distance (XOR
+ * plus popcount).
+ * 
+ * A table of patterns on a grid finer than Glyph.SIZE also stores every
+ * template at each finer level of its pyramid (see Glyph.pyramid), in one
+ * flat word array per level; the hash index and the scan only ever look at
+ * the coarse level.
+ */
+
+public class GlyphTable implements GlyphIndex {
+	
+	/** Marks an empty slot in the hash index. */
+	private static final int EMPTY = -1;
+	
+	/** Low words of every template, in insertion order. */
+	private long[] los;
+	
+	/** High words of every template, in insertion order. */
+	private long[] his;
+	
+	/** The character of every template, in insertion order. */
+	private char[] chars;
+	
+	/** The grid size of every level of the pyramid, coarsest (Glyph.SIZE) first. */
+	private final int[] levels;
+	
+	/** 
+	 * The words of every template at every level but the coarsest: template
+	 * t occupies words [t * w, (t + 1) * w) of fine[l - 1], where w is the word
+	 * count of level l.
+	 */
+	private long[][] fine;
+	
+	/** The number of templates in this table. */
+	private int size;
+	
+	/** 
+	 * The open-addressing hash index: each slot holds the position of a
+	 * template in the dense arrays or EMPTY. Its length is always a power of two
+	 * at least twice size.
+	 */
+	private int[] slots;
+	
+	/**
+	 * Constructs a new, empty GlyphTable.
+	 */
+	public GlyphTable() {
+		this(16);
+	}
+	
+	/**
+	 * Constructs a new, empty GlyphTable sized to hold <i>expected</i> templates
+	 * without growing.
+	 * 
+	 * @param expected The number of templates expected.
+	 * @throws IllegalArgumentException if expected is negative.
+	 */
+	public GlyphTable(int expected) {
+		this(Glyph.SIZE, expected);
+	}
+	
+	/**
+	 * Constructs a new, empty GlyphTable of patterns on the <i>gridSize</i> x
+	 * <i>gridSize</i> grid, sized to hold <i>expected</i> templates without
+	 * growing.
+	 * 
+	 * @param gridSize The grid size of the patterns, in [Glyph.SIZE, Glyph.MAX_SIZE].
+	 * @param expected The number of templates expected.
+	 * @throws IllegalArgumentException if gridSize is out of range or expected
+	 * 		   is negative.
+	 */
+	public GlyphTable(int gridSize, int expected) {
+		if (expected < 0) {
+			throw new IllegalArgumentException("Expected size cannot be negative...");
+		}
+		int capacity = Math.max(expected, 1);
+		levels = Glyph.pyramid(gridSize);
+		los = new long[capacity];
+		his = new long[capacity];
+		chars = new char[capacity];
+		fine = new long[levels.length - 1][];
+		for (int l = 1; l < levels.length; l++) {
+			fine[l - 1] = new long[capacity * Glyph.wordCount(levels[l])];
+		}
+		slots = new int[Math.max(4, Integer.highestOneBit(capacity * 2 - 1) << 1)];
+		Arrays.fill(slots, EMPTY);
+	}
+	
+	/**
+	 * Constructs a new GlyphTable holding the templates given by the parallel
+	 * arrays <i>los</i>, <i>his</i> and <i>chars</i> (later duplicates of a
+	 * pattern replace earlier ones).
+	 * 
+	 * @param los The low word of each template.
+	 * @param his The high word of each template.
+	 * @param chars The character of each template.
+	 * @throws NullPointerException if any argument is null.
+	 * @throws IllegalArgumentException if the arrays differ in length.
+	 */
+	public GlyphTable(long[] los, long[] his, char[] chars) {
+		this(Glyph.SIZE, los, his, chars, new long[0][]);
+	}
+	
+	/**
+	 * Constructs a new GlyphTable of patterns on the <i>gridSize</i> x
+	 * <i>gridSize</i> grid holding the templates given by the parallel arrays
+	 * <i>los</i>, <i>his</i> and <i>chars</i> (the coarse level) and
+	 * <i>fine</i> (every finer level, laid out as in this table; later
+	 * duplicates of a pattern replace earlier ones).
+	 * 
+	 * @param gridSize The grid size of the patterns, in [Glyph.SIZE, Glyph.MAX_SIZE].
+	 * @param los The low word of each template.
+	 * @param his The high word of each template.
+	 * @param chars The character of each template.
+	 * @param fine The words of each template at each finer level of the pyramid.
+	 * @throws NullPointerException if any argument is null.
+	 * @throws IllegalArgumentException if gridSize is out of range or the
+	 * 		   arrays do not all hold the same number of templates.
+	 */
+	public GlyphTable(int gridSize, long[] los, long[] his, char[] chars, long[][] fine) {
+		this(gridSize, chars.length);
+		if (los.length != chars.length || his.length != chars.length
+				|| fine.length != levels.length - 1) {
+			throw new IllegalArgumentException("Template arrays must be the same length...");
+		}
+		for (int l = 1; l < levels.length; l++) {
+			if (fine[l - 1].length != chars.length * Glyph.wordCount(levels[l])) {
+				throw new IllegalArgumentException("Template arrays must be the same length...");
+			}
+		}
+		for (int t = 0; t < chars.length; t++) {
+			insert(los[t], his[t], fine, t, chars[t]);
+		}
+	}
+	
+	/**
+	 * Maps <i>g</i> to <i>c</i>, replacing any previous character for g. The
+	 * coarser levels of the template are scaled down from g (see Glyph.scale).
+	 * 
+	 * @param g The pattern, on the grid of this table.
+	 * @param c The character the pattern represents.
+	 * @throws NullPointerException if g is null.
+	 * @throws IllegalArgumentException if g is not on the grid of this table.
+	 */
+	public void put(Glyph g, char c) {
+		if (g.getSize() != getGridSize()) {
+			throw new IllegalArgumentException("Pattern must be on the " + getGridSize()
+					+ " x " + getGridSize() + " grid...");
+		}
+		Glyph coarse = g.getSize() == Glyph.SIZE ? g : g.scale(Glyph.SIZE);
+		long[][] words = new long[levels.length - 1][];
+		for (int l = 1; l < levels.length; l++) {
+			Glyph level = g.getSize() == levels[l] ? g : g.scale(levels[l]);
+			words[l - 1] = new long[level.getWordCount()];
+			for (int w = 0; w < words[l - 1].length; w++) {
+				words[l - 1][w] = level.getWord(w);
+			}
+		}
+		insert(coarse.getLo(), coarse.getHi(), words, 0, c);
+	}
+	
+	/**
+	 * Maps the coarse pattern packed in (<i>lo</i>, <i>hi</i>) to <i>c</i>,
+	 * replacing any previous character for that pattern.
+	 * 
+	 * @param lo Bits 0 through 63 of the pattern.
+	 * @param hi The remaining bits of the pattern.
+	 * @param c The character the pattern represents.
+	 * @throws IllegalStateException if this table stores finer levels.
+	 */
+	public void put(long lo, long hi, char c) {
+		if (levels.length > 1) {
+			throw new IllegalStateException("Pattern must be on the " + getGridSize()
+					+ " x " + getGridSize() + " grid...");
+		}
+		insert(lo, hi, fine, 0, c);
+	}
+	
+	/**
+	 * Maps the template whose coarse level is packed in (<i>lo</i>, <i>hi</i>)
+	 * and whose finer levels are template <i>t</i> of <i>words</i> (laid out
+	 * as fine) to <i>c</i>, replacing any previous character for it.
+	 */
+	private void insert(long lo, long hi, long[][] words, int t, char c) {
+		int mask = slots.length - 1;
+		int i = hash(lo, hi) & mask;
+		while (slots[i] != EMPTY) {
+			int s = slots[i];
+			if (los[s] == lo && his[s] == hi && fineEquals(s, words, t)) {
+				chars[s] = c;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		if (size == los.length) {
+			los = Arrays.copyOf(los, size * 2);
+			his = Arrays.copyOf(his, size * 2);
+			chars = Arrays.copyOf(chars, size * 2);
+			for (int l = 0; l < fine.length; l++) {
+				fine[l] = Arrays.copyOf(fine[l], fine[l].length * 2);
+			}
+		}
+		los[size] = lo;
+		his[size] = hi;
+		chars[size] = c;
+		for (int l = 0; l < fine.length; l++) {
+			int n = Glyph.wordCount(levels[l + 1]);
+			System.arraycopy(words[l], t * n, fine[l], size * n, n);
+		}
+		slots[i] = size;
+		size++;
+		if (size * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+	}
+	
+	/**
+	 * Returns whether template <i>s</i> equals template <i>t</i> of
+	 * <i>words</i> (laid out as fine) at every finer level.
+	 */
+	private boolean fineEquals(int s, long[][] words, int t) {
+		for (int l = 0; l < fine.length; l++) {
+			int n = Glyph.wordCount(levels[l + 1]);
+			if (!Arrays.equals(fine[l], s * n, (s + 1) * n, words[l], t * n, (t + 1) * n)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the character the coarse pattern <i>g</i> maps to (that of the
+	 * first template whose coarse level is g), or NOT_FOUND if there is none.
+	 * 
+	 * @param g The pattern to look up, on the Glyph.SIZE x Glyph.SIZE grid.
+	 * @return the character for g, or NOT_FOUND.
+	 * @throws NullPointerException if g is null.
+	 */
+	public int get(Glyph g) {
+		return get(g.getLo(), g.getHi());
+	}
+	
+	/**
+	 * Returns the character the coarse pattern packed in (<i>lo</i>, <i>hi</i>)
+	 * maps to (that of the first template whose coarse level it is), or
+	 * NOT_FOUND if there is none.
+	 * 
+	 * @param lo Bits 0 through 63 of the pattern.
+	 * @param hi The remaining bits of the pattern.
+	 * @return the character for the pattern, or NOT_FOUND.
+	 */
+	public int get(long lo, long hi) {
+		int mask = slots.length - 1;
+		int i = hash(lo, hi) & mask;
+		while (slots[i] != EMPTY) {
+			// templates sharing a coarse level are probed in insertion order
+			int t = slots[i];
+			if (los[t] == lo && his[t] == hi) {
+				return chars[t];
+			}
+			i = (i + 1) & mask;
+		}
+		return NOT_FOUND;
+	}
+	
+	/**
+	 * Returns the character of the template closest in Hamming distance to the
+	 * pattern packed in (<i>lo</i>, <i>hi</i>), or NOT_FOUND if this table is
+	 * empty. An exact match is found through the hash index; otherwise ties go
+	 * to the template inserted first.
+	 * 
+	 * @param lo Bits 0 through 63 of the pattern.
+	 * @param hi The remaining bits of the pattern.
+	 * @return the character of the nearest template, or NOT_FOUND.
+	 */
+	@Override
+	public int nearest(long lo, long hi) {
+		int exact = get(lo, hi);
+		if (exact != NOT_FOUND) {
+			return exact;
+		}
+		return GlyphIndex.super.nearest(lo, hi);
+	}
+	
+	@Override
+	public int getLevelCount() {
+		return levels.length;
+	}
+	
+	@Override
+	public int getLevelSize(int level) {
+		return levels[level];
+	}
+	
+	/**
+	 * Returns the grid size of the patterns of this table (that of its finest level).
+	 * 
+	 * @return the width and height (in cells) of the grid.
+	 */
+	public int getGridSize() {
+		return levels[levels.length - 1];
+	}
+	
+	/**
+	 * Returns the number of templates in this table.
+	 * 
+	 * @return the number of templates.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the low word of template <i>t</i>.
+	 * 
+	 * @param t The position of the template in insertion order, in [0, size()).
+	 * @return bits 0 through 63 of the template.
+	 */
+	public long getLo(int t) {
+		checkTemplate(t);
+		return los[t];
+	}
+	
+	/**
+	 * Returns the high word of template <i>t</i>.
+	 * 
+	 * @param t The position of the template in insertion order, in [0, size()).
+	 * @return the remaining bits of the template.
+	 */
+	public long getHi(int t) {
+		checkTemplate(t);
+		return his[t];
+	}
+	
+	/**
+	 * Returns word <i>w</i> of template <i>t</i> at level <i>level</i> of the
+	 * pyramid.
+	 * 
+	 * @param t The position of the template in insertion order, in [0, size()).
+	 * @param level The level, in [0, getLevelCount()).
+	 * @param w The word, in [0, Glyph.wordCount(getLevelSize(level))).
+	 * @return bits 64w through 64w + 63 of the template at that level.
+	 */
+	@Override
+	public long getWord(int t, int level, int w) {
+		checkTemplate(t);
+		if (level == 0) {
+			return w == 0 ? los[t] : his[t];
+		}
+		return fine[level - 1][t * Glyph.wordCount(levels[level]) + w];
+	}
+	
+	/**
+	 * Returns the character of template <i>t</i>.
+	 * 
+	 * @param t The position of the template in insertion order, in [0, size()).
+	 * @return the character the template represents.
+	 */
+	@Override
+	public char getChar(int t) {
+		checkTemplate(t);
+		return chars[t];
+	}
+	
+	/**
+	 * Throws an IndexOutOfBoundsException unless t is in [0, size).
+	 */
+	private void checkTemplate(int t) {
+		if (t < 0 || t >= size) {
+			throw new IndexOutOfBoundsException("No template " + t + "...");
+		}
+	}
+	
+	/**
+	 * Rebuilds the hash index with <i>capacity</i> slots.
+	 * 
+	 * @requires capacity is a power of two greater than size.
+	 */
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		Arrays.fill(slots, EMPTY);
+		int mask = capacity - 1;
+		for (int t = 0; t < size; t++) {
+			int i = hash(los[t], his[t]) & mask;
+			while (slots[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = t;
+		}
+	}
+	
+	/**
+	 * Returns a well-mixed hash of the pattern packed in (<i>lo</i>, <i>hi</i>).
+	 */
+	private static int hash(long lo, long hi) {
+		long h = (lo ^ (hi * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+		return (int) (h ^ (h >>> 31));
+	}
+}
@@ -0,0 +1,185 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * IncrementalReader reads successive versions of one image that change only
+ * a little between reads (such as a canvas being drawn on), redoing only the
+ * work the change makes necessary.
+ * 
+ * The binarized image, the number of text pixels in each of its rows and the
+ * bounding box and character of every glyph are kept between reads. Only the
+ * region the caller reports as changed is binarized again and pasted into the
+ * image. Components are then labeled only within a window: the changed
+ * region grown by a pixel, together with every kept glyph whose box meets it
+ * or lies within mark-merging distance of it, grown again until no more
+ * glyphs join. Glyphs outside the window cannot have changed, so they keep
+ * their boxes and characters; inside it, a glyph whose box is exactly that of
+ * a kept glyph and does not meet the changed region reuses that glyph's
+ * character instead of being normalized and classified again. The lines are
+ * then found from the row counts and the glyphs laid out from their boxes,
+ * so a read costs time in the size of the window, the height of the image
+ * and the number of glyphs rather than in the area of the image.
+ * 
+ * Adaptive binarization and estimated backgrounds depend on the whole
+ * image, so with either of them every read starts afresh.
+ */
+
+public class IncrementalReader {
+	
+	/** Orders glyph boxes by left edge, then top edge. */
+	private static final Comparator<Rectangle> LEFT_TO_RIGHT =
+			Comparator.comparingInt((Rectangle box) -> box.x).thenComparingInt(box -> box.y);
+	
+	/** The Recognizer of the previous read, or null if there was none. */
+	private Recognizer recognizer;
+	
+	/** The binarized image of the previous read, or null if there was none. */
+	private BinaryImage text;
+	
+	/** The number of text pixels in each row of text. */
+	private int[] rowInk;
+	
+	/** The bounding box of every glyph of the previous read, ordered by LEFT_TO_RIGHT. */
+	private Rectangle[] boxes = new Rectangle[0];
+	
+	/** The character of every glyph of the previous read, by position in boxes. */
+	private char[] chars = new char[0];
+	
+	/** The text of the previous read, or null if there was none. */
+	private String last;
+	
+	/**
+	 * Returns the text pictured in <i>img</i>, which differs from the image of
+	 * the previous read only within <i>dirty</i>. The first read, and any read
+	 * with a different Recognizer or image size than the previous one, reads
+	 * the whole image.
+	 * 
+	 * @param recognizer The Recognizer to read with.
+	 * @param img The image to read text from.
+	 * @param dirty The region of img that may have changed since the previous
+	 * 		  read (empty if none has).
+	 * @return The text in the picture.
+	 * @throws NullPointerException if any argument is null.
+	 */
+	public synchronized String read(Recognizer recognizer, BufferedImage img, Rectangle dirty) {
+		if (recognizer == null) {
+			throw new NullPointerException("Recognizer cannot be null...");
+		}
+		if (img == null) {
+			throw new NullPointerException("Image cannot be null...");
+		}
+		if (dirty == null) {
+			throw new NullPointerException("Dirty region cannot be null...");
+		}
+		Rectangle bounds = new Rectangle(img.getWidth(), img.getHeight());
+		Rectangle region = dirty.intersection(bounds);
+		boolean incremental = recognizer == this.recognizer
+				&& text.getWidth() == img.getWidth() && text.getHeight() == img.getHeight()
+				&& recognizer.getBinarization() == Binarizer.Mode.EXACT
+				&& !recognizer.isAutoBackground();
+		if (!incremental) {
+			this.recognizer = recognizer;
+			text = recognizer.binarize(img);
+			rowInk = new int[text.getHeight()];
+			for (int y = 0; y < rowInk.length; y++) {
+				rowInk[y] = text.count(y, 0, text.getWidth());
+			}
+			boxes = new Rectangle[0];
+			chars = new char[0];
+			region = bounds;
+		} else if (region.isEmpty()) {
+			return last;
+		} else {
+			BufferedImage changed = img.getSubimage(region.x, region.y, region.width, region.height);
+			BinaryImage patch = Binarizer.binarize(changed, recognizer.getBackground().getRGB());
+			for (int y = 0; y < region.height; y++) {
+				rowInk[region.y + y] += patch.count(y, 0, region.width)
+						- text.count(region.y + y, region.x, region.x + region.width);
+			}
+			text.paste(patch, region.x, region.y);
+		}
+		
+		// grow the window until every glyph that may have changed lies within it
+		Rectangle window = new Rectangle(region);
+		window.grow(1, 1);
+		window = window.intersection(bounds);
+		boolean[] inside = new boolean[boxes.length];
+		boolean grown = true;
+		while (grown) {
+			grown = false;
+			for (int g = 0; g < boxes.length; g++) {
+				if (!inside[g] && reaches(boxes[g], window)) {
+					inside[g] = true;
+					window.add(boxes[g]);
+					grown = true;
+				}
+			}
+		}
+		Map<Rectangle, Character> kept = new HashMap<>();
+		int outside = 0;
+		for (int g = 0; g < boxes.length; g++) {
+			if (!inside[g]) {
+				outside++;
+			} else if (!boxes[g].intersects(region)) {
+				kept.put(boxes[g], chars[g]);
+			}
+		}
+		
+		// label and classify the window, and keep every glyph outside it
+		PageLayout page = recognizer.segment(text.crop(window.x, window.y, window.width, window.height));
+		ComponentLabeler components = page.getComponents();
+		Rectangle[] nextBoxes = new Rectangle[outside + page.getGlyphCount()];
+		char[] nextChars = new char[nextBoxes.length];
+		int count = 0;
+		for (int g = 0; g < boxes.length; g++) {
+			if (!inside[g]) {
+				nextBoxes[count] = boxes[g];
+				nextChars[count++] = chars[g];
+			}
+		}
+		for (int i = 0; i < page.getGlyphCount(); i++) {
+			Rectangle box = components.getBox(page.getGlyph(i));
+			box.translate(window.x, window.y);
+			Character c = kept.get(box);
+			nextBoxes[count] = box;
+			nextChars[count++] = c != null ? c : recognizer.readChar(page, i);
+		}
+		
+		// lay out every glyph from the row counts and the boxes alone
+		Integer[] order = new Integer[count];
+		for (int g = 0; g < count; g++) {
+			order[g] = g;
+		}
+		Arrays.sort(order, Comparator.comparing((Integer g) -> nextBoxes[g], LEFT_TO_RIGHT));
+		boxes = new Rectangle[count];
+		chars = new char[count];
+		for (int g = 0; g < count; g++) {
+			boxes[g] = nextBoxes[order[g]];
+			chars[g] = nextChars[order[g]];
+		}
+		PageLayout layout = new PageLayout(boxes.length,
+				LayoutAnalyzer.analyze(ProjectionSegmenter.rows(rowInk), boxes));
+		char[] result = new char[boxes.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = chars[layout.getGlyph(i)];
+		}
+		last = layout.assemble(result);
+		return last;
+	}
+	
+	/**
+	 * Returns whether the glyph with bounding box <i>box</i> may be changed by
+	 * a change within <i>window</i>: whether it meets the window, or lies
+	 * above or below it within the distance ComponentLabeler merges marks
+	 * across (half the height of the taller of the two).
+	 */
+	private static boolean reaches(Rectangle box, Rectangle window) {
+		int reach = Math.max(box.height, window.height) / 2 + 1;
+		return box.x < window.x + window.width && window.x < box.x + box.width
+				&& box.y - reach < window.y + window.height && window.y < box.y + box.height + reach;
+	}
+}
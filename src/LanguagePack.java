@@ -0,0 +1,222 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * LanguagePack reads and writes the character patterns of a language.
+ * 
+ * Languages are written by hand as text files (see readText) and compiled
+ * offline by LanguagePackCompiler into binary packs, which need no parsing:
+ * they are matched against in place through a MappedGlyphIndex. A pack is
+ * laid out as follows (all values big-endian):
+ * 
+ * <pre>
+ * offset  size        contents
+ * 0       4           MAGIC
+ * 4       4           VERSION
+ * 8       4           the grid size of the patterns, s
+ * 12      4           the number of patterns, n
+ * 16      4           the CRC-32 of every byte from offset HEADER_SIZE on
+ * 20      4           reserved (0)
+ * 24      8 * n       the low word of every pattern at the coarse level
+ * 24 + 8n 8 * n       the high word of every pattern at the coarse level
+ * 24 + 16n 2 * n      the character of every pattern, zero-padded to 8 bytes
+ * ...     8 * n * w   every pattern at each finer level of Glyph.pyramid(s),
+ *                     w = Glyph.wordCount(level size) words per pattern
+ * </pre>
+ * 
+ * Each column is 8-byte aligned, so the words can be viewed in place. Packs
+ * of version 1 (coarse grid only, without padding) are still read.
+ */
+
+public class LanguagePack {
+	
+	/** The first four bytes of every pack ("TRLP"). */
+	public static final int MAGIC = 0x54524C50;
+	
+	/** The version of the pack format written by this class. */
+	public static final int VERSION = 2;
+	
+	/** The size in bytes of the pack header. */
+	public static final int HEADER_SIZE = 24;
+	
+	/** Starts the optional first line of a text language file giving its grid size. */
+	private static final String GRID = "# grid ";
+	
+	/**
+	 * Returns the text language file of <i>language</i> ("data/LANGUAGE.txt").
+	 * 
+	 * @param language The language.
+	 * @return the text file of the language.
+	 */
+	public static File textFile(String language) {
+		return new File("data/" + language + ".txt");
+	}
+	
+	/**
+	 * Returns the compiled pack of <i>language</i> ("data/LANGUAGE.pack").
+	 * 
+	 * @param language The language.
+	 * @return the pack file of the language.
+	 */
+	public static File packFile(String language) {
+		return new File("data/" + language + ".pack");
+	}
+	
+	/**
+	 * Returns a table of pixel patterns (Glyphs on the square of dimension
+	 * N x N) to characters read from the text language file <i>f</i>.
+	 * 
+	 * The language file should be formatted as follows: tab-separated pixel
+	 * coordinates (each delimited by ', ') followed by a tab, followed by a
+	 * single character representing the character that the pixel pattern
+	 * containing all those coordinates represents (one character per line).
+	 * The grid size N is Glyph.SIZE unless the first line is "# grid N".
+	 * 
+	 * Example lines:
+	 * # grid 9
+	 * 4, 0	4, 1	4, 2	4, 3	4, 4	4, 5	4, 6	4, 7	4, 8	1
+	 * 
+	 * @param f The language file to read.
+	 * @requires a non-null, properly formatted language file.
+	 * @return The table of pixels patterns to characters.
+	 * @throws IOException if f cannot be read.
+	 * @throws IllegalArgumentException if the grid size or a coordinate is out of range.
+	 */
+	public static GlyphTable readText(File f) throws IOException {
+		assert f != null;
+		BufferedReader reader = new BufferedReader(new FileReader(f));
+		try {
+			int gridSize = Glyph.SIZE;
+			String inputLine = reader.readLine();
+			if (inputLine != null && inputLine.startsWith(GRID)) {
+				gridSize = Integer.parseInt(inputLine.substring(GRID.length()).trim());
+				inputLine = reader.readLine();
+			}
+			GlyphTable characters = new GlyphTable(gridSize, 16);
+			while (inputLine != null) {
+				// parse the data
+				String[] tokens = inputLine.split("\t");
+				assert tokens.length > 0: "Bad line " + inputLine + "!";
+				// first (length - 1) entries are points, last is actual character
+				char c = tokens[tokens.length - 1].charAt(0);
+				Glyph points = new Glyph(gridSize);
+				for (int i = 0; i < tokens.length - 1; i++) {
+					String[] pointTokens = tokens[i].split(", ");
+					assert pointTokens.length == 2: "Bad line " + inputLine + "!";
+					int x = Integer.parseInt(pointTokens[0]);
+					int y = Integer.parseInt(pointTokens[1]);
+					points.set(x, y);
+				}
+				characters.put(points, c);
+				inputLine = reader.readLine();
+			}
+			return characters;
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Writes the patterns of <i>characters</i> to the pack <i>f</i>,
+	 * replacing any existing file.
+	 * 
+	 * @param characters The table of pixel patterns to characters.
+	 * @param f The pack to write.
+	 * @throws NullPointerException if either argument is null.
+	 * @throws IOException if f cannot be written.
+	 */
+	public static void write(GlyphTable characters, File f) throws IOException {
+		int n = characters.size();
+		int[] levels = Glyph.pyramid(characters.getGridSize());
+		ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(offset(levels, n, levels.length)));
+		buf.position(HEADER_SIZE);
+		for (int t = 0; t < n; t++) {
+			buf.putLong(characters.getLo(t));
+		}
+		for (int t = 0; t < n; t++) {
+			buf.putLong(characters.getHi(t));
+		}
+		for (int t = 0; t < n; t++) {
+			buf.putChar(characters.getChar(t));
+		}
+		for (int l = 1; l < levels.length; l++) {
+			buf.position((int) offset(levels, n, l));
+			for (int t = 0; t < n; t++) {
+				for (int w = 0; w < Glyph.wordCount(levels[l]); w++) {
+					buf.putLong(characters.getWord(t, l, w));
+				}
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), HEADER_SIZE, buf.capacity() - HEADER_SIZE);
+		buf.putInt(0, MAGIC);
+		buf.putInt(4, VERSION);
+		buf.putInt(8, characters.getGridSize());
+		buf.putInt(12, n);
+		buf.putInt(16, (int) crc.getValue());
+		buf.putInt(20, 0);
+		
+		OutputStream out = new FileOutputStream(f);
+		try {
+			out.write(buf.array());
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Returns the byte offset of the patterns at level <i>level</i> of the
+	 * pyramid with grid sizes <i>levels</i> in a pack of <i>n</i> patterns
+	 * (for level 0, that of the low words; for levels.length, the pack size).
+	 */
+	static long offset(int[] levels, int n, int level) {
+		if (level == 0) {
+			return HEADER_SIZE;
+		}
+		long offset = HEADER_SIZE + 16L * n + ((2L * n + 7) & ~7L);
+		for (int l = 1; l < level; l++) {
+			offset += 8L * n * Glyph.wordCount(levels[l]);
+		}
+		return offset;
+	}
+	
+	/**
+	 * Validates the header, length and checksum of the pack held in
+	 * <i>buf</i> (read from <i>f</i>) and returns its number of patterns.
+	 * 
+	 * @throws IOException if buf does not hold a valid pack.
+	 */
+	static int checkHeader(ByteBuffer buf, File f) throws IOException {
+		if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+			throw new IOException("Not a language pack: " + f);
+		}
+		int version = buf.getInt(4);
+		if (version != 1 && version != VERSION) {
+			throw new IOException("Unsupported language pack version " + version + ": " + f);
+		}
+		int gridSize = buf.getInt(8);
+		if (gridSize < Glyph.SIZE || gridSize > Glyph.MAX_SIZE || (version == 1 && gridSize != Glyph.SIZE)) {
+			throw new IOException("Unsupported grid size " + gridSize + ": " + f);
+		}
+		int n = buf.getInt(12);
+		int[] levels = Glyph.pyramid(gridSize);
+		long size = version == 1 ? HEADER_SIZE + 18L * n : offset(levels, n, levels.length);
+		if (n < 0 || buf.capacity() != size) {
+			throw new IOException("Truncated language pack: " + f);
+		}
+		CRC32 crc = new CRC32();
+		ByteBuffer payload = buf.duplicate();
+		payload.position(HEADER_SIZE);
+		crc.update(payload);
+		if ((int) crc.getValue() != buf.getInt(16)) {
+			throw new IOException("Corrupt language pack: " + f);
+		}
+		return n;
+	}
+}
@@ -0,0 +1,37 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * LanguagePackCompiler compiles text language files into binary language
+ * packs offline. Run it from the project root with the languages to compile:
+ * 
+ * <pre>
+ * java LanguagePackCompiler English
+ * </pre>
+ * 
+ * compiles data/English.txt into data/English.pack. Recompile a language
+ * whenever its text file changes, since Readers prefer the pack when it exists.
+ */
+
+public class LanguagePackCompiler {
+	
+	/** Compiles the text file of every language named in args into a pack. */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: java LanguagePackCompiler LANGUAGE...");
+			System.exit(2);
+		}
+		for (String language : args) {
+			File in = LanguagePack.textFile(language);
+			File out = LanguagePack.packFile(language);
+			try {
+				GlyphTable characters = LanguagePack.readText(in);
+				LanguagePack.write(characters, out);
+				System.out.println(in + " -> " + out + " (" + characters.size() + " patterns)");
+			} catch (IOException e) {
+				System.err.println("Could not compile " + in + ": " + e.getMessage());
+				System.exit(1);
+			}
+		}
+	}
+}
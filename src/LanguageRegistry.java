@@ -0,0 +1,92 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * LanguageRegistry caches one template index per language for the whole
+ * process, so only the first Reader to use a language loads it from disk.
+ * 
+ * Indices are loaded lazily (each at most once at a time, even when many
+ * threads ask for the same language) and held through soft references, so
+ * the garbage collector may evict a language no Reader still uses when memory
+ * runs short; it is reloaded on next use. Indices are never modified after
+ * loading, so one instance is safely shared by every Reader.
+ */
+
+public class LanguageRegistry {
+	
+	/** The cached index of every language loaded so far. */
+	private static final ConcurrentMap<String, SoftReference<GlyphIndex>> INDICES =
+			new ConcurrentHashMap<>();
+	
+	/** Per-language locks, so distinct languages can load concurrently. */
+	private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+	
+	/**
+	 * Returns the template index of <i>language</i>, loading it (see load) on
+	 * first use or after it has been evicted.
+	 * 
+	 * @param language The language.
+	 * @return the shared index of the language's character patterns.
+	 * @throws NullPointerException if language is null.
+	 * @throws IOException if the language is not cached and cannot be loaded.
+	 */
+	public static GlyphIndex get(String language) throws IOException {
+		GlyphIndex index = cached(language);
+		if (index != null) {
+			return index;
+		}
+		synchronized (LOCKS.computeIfAbsent(language, k -> new Object())) {
+			// another thread may have loaded it while we waited
+			index = cached(language);
+			if (index == null) {
+				index = load(language);
+				INDICES.put(language, new SoftReference<>(index));
+			}
+			return index;
+		}
+	}
+	
+	/**
+	 * Drops the cached index of <i>language</i> (if any), so the next get
+	 * reloads it from disk. Readers already holding the index keep using it.
+	 * 
+	 * @param language The language.
+	 * @throws NullPointerException if language is null.
+	 */
+	public static void evict(String language) {
+		INDICES.remove(language);
+	}
+	
+	/**
+	 * Returns the cached index of <i>language</i>, or null if there is none.
+	 */
+	private static GlyphIndex cached(String language) {
+		SoftReference<GlyphIndex> ref = INDICES.get(language);
+		return ref == null ? null : ref.get();
+	}
+	
+	/**
+	 * Returns an index of pixel patterns (Glyphs on the language's grid, see
+	 * LanguagePack) to characters for the given language. The
+	 * compiled pack "data/LANGUAGE.pack" is memory-mapped if there is one
+	 * (keeping the patterns off the heap and shared with every other mapping
+	 * of the pack) and its checksum verified, once per load; otherwise the
+	 * text language file "data/LANGUAGE.txt" is parsed (see LanguagePack).
+	 * 
+	 * @param language The language to load an index of character patterns for.
+	 * @requires a non-null language.
+	 * @return The index of pixels patterns to characters.
+	 * @throws IOException if neither file can be read or the pack is invalid or corrupt.
+	 */
+	private static GlyphIndex load(String language) throws IOException {
+		assert language != null;
+		File pack = LanguagePack.packFile(language);
+		if (pack.isFile()) {
+			return new MappedGlyphIndex(pack);
+		}
+		return LanguagePack.readText(LanguagePack.textFile(language));
+	}
+}
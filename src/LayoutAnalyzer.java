@@ -0,0 +1,158 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LayoutAnalyzer splits a page of text into lines, lines into words and words
+ * into glyphs ahead of recognition.
+ * 
+ * Lines are the bands of text rows in the horizontal projection profile of the
+ * page; bands much shorter than a typical line (the dots of a line of 'i's,
+ * say) are folded into their nearest neighbor. Each glyph belongs to the line
+ * containing its vertical center, and a word ends wherever the horizontal gap
+ * to the next glyph on the line is at least 1/WORD_GAP of the line height.
+ */
+
+public class LayoutAnalyzer {
+	
+	/** Gaps of at least 1/WORD_GAP of the line height separate words. */
+	private static final int WORD_GAP = 4;
+	
+	/**
+	 * Returns the lines of text in <i>img</i>, from top to bottom.
+	 * 
+	 * @param img The binarized page of text.
+	 * @param components The glyphs of img.
+	 * @return The lines of the page.
+	 * @throws NullPointerException if either argument is null.
+	 */
+	public static List<TextLine> analyze(BinaryImage img, ComponentLabeler components) {
+		Rectangle[] boxes = new Rectangle[components.getCount()];
+		for (int g = 0; g < boxes.length; g++) {
+			boxes[g] = components.getBox(g);
+		}
+		return analyze(ProjectionSegmenter.rows(img), boxes);
+	}
+	
+	/**
+	 * Returns the lines of text of a page with text bands <i>rows</i> (as
+	 * returned by ProjectionSegmenter) and glyph bounding boxes <i>boxes</i>,
+	 * from top to bottom. Glyph g of the lines is boxes[g].
+	 * 
+	 * @param rows The bands of rows of the page holding text.
+	 * @param boxes The bounding box of each glyph, ordered by left edge.
+	 * @return The lines of the page.
+	 * @throws NullPointerException if either argument is null.
+	 * @requires every box lies within the page, so rows is non-empty if boxes is.
+	 */
+	public static List<TextLine> analyze(int[] rows, Rectangle[] boxes) {
+		int[] bands = mergeShortBands(rows);
+		int lineCount = bands.length / 2;
+		
+		// assign every glyph (already ordered left to right) to its line
+		int[] glyphLines = new int[boxes.length];
+		int[] lineSizes = new int[lineCount];
+		for (int g = 0; g < glyphLines.length; g++) {
+			Rectangle box = boxes[g];
+			glyphLines[g] = lineOf(bands, box.y + box.height / 2);
+			lineSizes[glyphLines[g]]++;
+		}
+		int[][] lineGlyphs = new int[lineCount][];
+		for (int line = 0; line < lineCount; line++) {
+			lineGlyphs[line] = new int[lineSizes[line]];
+			lineSizes[line] = 0;
+		}
+		for (int g = 0; g < glyphLines.length; g++) {
+			lineGlyphs[glyphLines[g]][lineSizes[glyphLines[g]]++] = g;
+		}
+		
+		// split each line into words at wide gaps
+		List<TextLine> lines = new ArrayList<>(lineCount);
+		for (int line = 0; line < lineCount; line++) {
+			int top = bands[2 * line];
+			int height = bands[2 * line + 1] - top;
+			int minGap = Math.max(1, height / WORD_GAP);
+			List<int[]> words = new ArrayList<>();
+			int start = 0;
+			int right = Integer.MIN_VALUE;
+			for (int i = 0; i < lineSizes[line]; i++) {
+				Rectangle box = boxes[lineGlyphs[line][i]];
+				if (i > 0 && box.x - right >= minGap) {
+					words.add(Arrays.copyOfRange(lineGlyphs[line], start, i));
+					start = i;
+				}
+				right = Math.max(right, box.x + box.width);
+			}
+			if (lineSizes[line] > 0) {
+				words.add(Arrays.copyOfRange(lineGlyphs[line], start, lineSizes[line]));
+				lines.add(new TextLine(words.toArray(new int[words.size()][])));
+			}
+		}
+		return lines;
+	}
+	
+	/**
+	 * Returns <i>bands</i> with every band shorter than half the median band
+	 * height merged into the neighboring band it is closest to.
+	 * 
+	 * @requires bands is a list of [top, bottom) pairs in increasing order.
+	 */
+	private static int[] mergeShortBands(int[] bands) {
+		int count = bands.length / 2;
+		if (count < 2) {
+			return bands;
+		}
+		int[] heights = new int[count];
+		for (int i = 0; i < count; i++) {
+			heights[i] = bands[2 * i + 1] - bands[2 * i];
+		}
+		int[] sorted = heights.clone();
+		Arrays.sort(sorted);
+		int minHeight = sorted[count / 2] / 2;
+		
+		// merge short bands one at a time until none remain (or one band is left)
+		int[] merged = bands.clone();
+		while (count > 1) {
+			int shortest = -1;
+			for (int i = 0; i < count; i++) {
+				int height = merged[2 * i + 1] - merged[2 * i];
+				if (height < minHeight && (shortest < 0 
+						|| height < merged[2 * shortest + 1] - merged[2 * shortest])) {
+					shortest = i;
+				}
+			}
+			if (shortest < 0) {
+				break;
+			}
+			int above = shortest > 0 ? merged[2 * shortest] - merged[2 * shortest - 1] : Integer.MAX_VALUE;
+			int below = shortest < count - 1 ? merged[2 * shortest + 2] - merged[2 * shortest + 1]
+					: Integer.MAX_VALUE;
+			// drop the gap between the short band and its closer neighbor
+			int gap = above <= below ? 2 * shortest - 1 : 2 * shortest + 1;
+			System.arraycopy(merged, gap + 2, merged, gap, 2 * count - gap - 2);
+			count--;
+		}
+		return Arrays.copyOf(merged, 2 * count);
+	}
+	
+	/**
+	 * Returns the index of the band containing row <i>y</i>, or of the nearest
+	 * band if y lies in a gap.
+	 * 
+	 * @requires bands is a non-empty list of [top, bottom) pairs in increasing order.
+	 */
+	private static int lineOf(int[] bands, int y) {
+		int best = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int i = 0; i < bands.length / 2; i++) {
+			int distance = y < bands[2 * i] ? bands[2 * i] - y
+					: y >= bands[2 * i + 1] ? y - bands[2 * i + 1] + 1 : 0;
+			if (distance < bestDistance) {
+				best = i;
+				bestDistance = distance;
+			}
+		}
+		return best;
+	}
+}
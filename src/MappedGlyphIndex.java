@@ -0,0 +1,113 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MappedGlyphIndex matches patterns directly against a compiled language pack
+ * (see LanguagePack) mapped read-only into memory. The templates never
+ * reach the heap: the operating system pages them in on first use and shares
+ * the pages among every mapping of the same pack, in this process and in any
+ * other.
+ * 
+ * The header, length and checksum of the pack are checked when it is
+ * mapped. Verifying the checksum faults the whole file in once, so a pack
+ * should be mapped once and the index shared (as LanguageRegistry does).
+ */
+
+public class MappedGlyphIndex implements GlyphIndex {
+	
+	/** The low word of every template, viewed in place. */
+	private final LongBuffer los;
+	
+	/** The high word of every template, viewed in place. */
+	private final LongBuffer his;
+	
+	/** The character of every template, viewed in place. */
+	private final CharBuffer chars;
+	
+	/** The grid size of every level of the pyramid, coarsest first. */
+	private final int[] levels;
+	
+	/** Every template at every level but the coarsest, viewed in place. */
+	private final LongBuffer[] fine;
+	
+	/** The number of words of each template at every level but the coarsest. */
+	private final int[] fineWords;
+	
+	/** The number of templates in the pack. */
+	private final int size;
+	
+	/**
+	 * Constructs a new MappedGlyphIndex over the pack <i>f</i>.
+	 * 
+	 * @param f The compiled language pack to map.
+	 * @throws NullPointerException if f is null.
+	 * @throws IOException if f cannot be mapped or is not a valid pack.
+	 */
+	public MappedGlyphIndex(File f) throws IOException {
+		MappedByteBuffer buf;
+		RandomAccessFile file = new RandomAccessFile(f, "r");
+		try {
+			// the mapping stays valid once the channel is closed
+			buf = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+		} finally {
+			file.close();
+		}
+		this.size = LanguagePack.checkHeader(buf, f);
+		this.levels = Glyph.pyramid(buf.getInt(8));
+		this.los = slice(buf, LanguagePack.HEADER_SIZE).asLongBuffer();
+		this.his = slice(buf, LanguagePack.HEADER_SIZE + 8 * size).asLongBuffer();
+		this.chars = slice(buf, LanguagePack.HEADER_SIZE + 16 * size).asCharBuffer();
+		this.fine = new LongBuffer[levels.length - 1];
+		this.fineWords = new int[levels.length - 1];
+		for (int l = 1; l < levels.length; l++) {
+			fine[l - 1] = slice(buf, (int) LanguagePack.offset(levels, size, l)).asLongBuffer();
+			fineWords[l - 1] = Glyph.wordCount(levels[l]);
+		}
+	}
+	
+	@Override
+	public long getWord(int t, int level, int w) {
+		if (t < 0 || t >= size) {
+			throw new IndexOutOfBoundsException("No template " + t + "...");
+		}
+		if (level == 0) {
+			return w == 0 ? los.get(t) : his.get(t);
+		}
+		return fine[level - 1].get(t * fineWords[level - 1] + w);
+	}
+	
+	@Override
+	public char getChar(int t) {
+		return chars.get(t);
+	}
+	
+	@Override
+	public int getLevelCount() {
+		return levels.length;
+	}
+	
+	@Override
+	public int getLevelSize(int level) {
+		return levels[level];
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns a view of <i>buf</i> starting at byte <i>offset</i>.
+	 */
+	private static ByteBuffer slice(ByteBuffer buf, int offset) {
+		ByteBuffer view = buf.duplicate();
+		view.position(offset);
+		return view.slice();
+	}
+}
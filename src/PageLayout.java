@@ -0,0 +1,129 @@
+import java.util.List;
+
+/**
+ * PageLayout is the reading order of the glyphs of a page: the glyphs of
+ * every word of every line, in order, together with where each glyph's
+ * character goes in the page's text. Words are separated by ' ' and lines by
+ * '\n', so once every glyph is classified the text can be assembled without
+ * any further searching or string building.
+ */
+
+public class PageLayout {
+	
+	/** The labeled glyphs of the page. */
+	private final ComponentLabeler components;
+	
+	/** The component index of each glyph, in reading order. */
+	private final int[] glyphs;
+	
+	/** The position in the text of each glyph's character. */
+	private final int[] positions;
+	
+	/** The text with its separators filled in and its characters left blank. */
+	private final char[] template;
+	
+	/**
+	 * Constructs a new PageLayout of the glyphs in <i>components</i> laid out
+	 * in <i>lines</i>.
+	 * 
+	 * @param components The labeled glyphs of the page.
+	 * @param lines The lines of the page, from top to bottom.
+	 * @requires non-null arguments; every glyph of components is in exactly one line.
+	 */
+	public PageLayout(ComponentLabeler components, List<TextLine> lines) {
+		this(components, components.getCount(), lines);
+	}
+	
+	/**
+	 * Constructs a new PageLayout of <i>count</i> glyphs held in no labeling
+	 * (such as glyphs gathered from several labelings) laid out in
+	 * <i>lines</i>. Its getComponents() returns null.
+	 * 
+	 * @param count The number of glyphs of the page.
+	 * @param lines The lines of the page, from top to bottom.
+	 * @requires lines is non-null; every glyph in [0, count) is in exactly one line.
+	 */
+	public PageLayout(int count, List<TextLine> lines) {
+		this(null, count, lines);
+	}
+	
+	/**
+	 * Constructs a new PageLayout of the <i>glyphCount</i> glyphs of
+	 * <i>components</i> (possibly null) laid out in <i>lines</i>.
+	 */
+	private PageLayout(ComponentLabeler components, int glyphCount, List<TextLine> lines) {
+		this.components = components;
+		int length = glyphCount + Math.max(0, lines.size() - 1);
+		for (TextLine line : lines) {
+			length += line.getWordCount() - 1;
+		}
+		this.template = new char[length];
+		this.glyphs = new int[glyphCount];
+		this.positions = new int[glyphCount];
+		int count = 0;
+		int pos = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			if (i > 0) {
+				template[pos++] = '\n';
+			}
+			TextLine line = lines.get(i);
+			for (int w = 0; w < line.getWordCount(); w++) {
+				if (w > 0) {
+					template[pos++] = ' ';
+				}
+				for (int glyph : line.getWord(w)) {
+					glyphs[count] = glyph;
+					positions[count++] = pos++;
+				}
+			}
+		}
+		assert count == glyphs.length && pos == length;
+	}
+	
+	/**
+	 * Returns the labeled glyphs of the page.
+	 * 
+	 * @return the labeling this layout orders, or null if it has none.
+	 */
+	public ComponentLabeler getComponents() {
+		return components;
+	}
+	
+	/**
+	 * Returns the number of glyphs on the page.
+	 * 
+	 * @return the number of glyphs.
+	 */
+	public int getGlyphCount() {
+		return glyphs.length;
+	}
+	
+	/**
+	 * Returns the component index (in getComponents()) of glyph <i>i</i> in
+	 * reading order.
+	 * 
+	 * @param i The position of the glyph in reading order, in [0, getGlyphCount()).
+	 * @return the index of the glyph's component.
+	 */
+	public int getGlyph(int i) {
+		return glyphs[i];
+	}
+	
+	/**
+	 * Returns the text of the page given the character of every glyph.
+	 * 
+	 * @param chars The character of each glyph, in reading order.
+	 * @return the text, with words separated by ' ' and lines by '\n'.
+	 * @throws IllegalArgumentException if chars.length != getGlyphCount().
+	 */
+	public String assemble(char[] chars) {
+		if (chars.length != glyphs.length) {
+			throw new IllegalArgumentException("Expected " + glyphs.length + " characters...");
+		}
+		char[] text = template.clone();
+		for (int i = 0; i < chars.length; i++) {
+			text[positions[i]] = chars[i];
+		}
+		return new String(text);
+	}
+}
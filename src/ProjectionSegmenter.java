@@ -0,0 +1,61 @@
+/**
+ * ProjectionSegmenter splits a page into lines using the horizontal
+ * projection profile of the image: each run of text rows is a line.
+ * 
+ * The profile is computed on the packed words of a BinaryImage, 64 pixels
+ * at a time: a row holds text iff any of its words is non-zero.
+ */
+
+public class ProjectionSegmenter {
+	
+	/**
+	 * Returns the bands of rows of <i>img</i> holding text, as consecutive
+	 * pairs [top, bottom) of rows: band i covers rows [bands[2 * i], bands[2 * i + 1]).
+	 * 
+	 * @param img The binarized page of text.
+	 * @return The text bands, from top to bottom.
+	 * @throws NullPointerException if img is null.
+	 */
+	public static int[] rows(BinaryImage img) {
+		int height = img.getHeight();
+		long[] words = img.getWords();
+		int wordsPerRow = img.getWordsPerRow();
+		int[] profile = new int[height];
+		for (int y = 0, i = 0; y < height; y++, i += wordsPerRow) {
+			for (int w = 0; w < wordsPerRow && profile[y] == 0; w++) {
+				profile[y] = words[i + w] != 0 ? 1 : 0;
+			}
+		}
+		return rows(profile);
+	}
+	
+	/**
+	 * Returns the bands of rows whose entry in <i>profile</i> is non-zero, as
+	 * consecutive pairs [top, bottom) of rows like rows(BinaryImage). Callers
+	 * that keep the number of text pixels in each row up to date can find the
+	 * lines of a page this way without scanning its pixels.
+	 * 
+	 * @param profile The amount of text in each row, from top to bottom.
+	 * @return The text bands, from top to bottom.
+	 * @throws NullPointerException if profile is null.
+	 */
+	public static int[] rows(int[] profile) {
+		int height = profile.length;
+		int[] bands = new int[height + 1];
+		int count = 0;
+		boolean inBand = false;
+		for (int y = 0; y < height; y++) {
+			boolean ink = profile[y] != 0;
+			if (ink != inBand) {
+				bands[count++] = y;
+				inBand = ink;
+			}
+		}
+		if (inBand) {
+			bands[count++] = height;
+		}
+		int[] result = new int[count];
+		System.arraycopy(bands, 0, result, 0, count);
+		return result;
+	}
+}
@@ -0,0 +1,75 @@
+import java.io.File;
+
+/**
+ * ReadResult is the outcome of reading one file of a batch (see
+ * Reader.readAll): either the text read from the file or the exception that
+ * reading it threw.
+ */
+
+public final class ReadResult {
+	
+	/** The file that was read. */
+	private final File file;
+	
+	/** The text in the file's image, or null if reading failed. */
+	private final String text;
+	
+	/** The exception reading the file threw, or null if it succeeded. */
+	private final RuntimeException error;
+	
+	/**
+	 * Constructs a new ReadResult.
+	 * 
+	 * @param file The file that was read.
+	 * @param text The text read, or null if reading failed.
+	 * @param error The exception reading threw, or null if it succeeded.
+	 * @requires exactly one of text and error is null.
+	 */
+	public ReadResult(File file, String text, RuntimeException error) {
+		assert (text == null) != (error == null);
+		this.file = file;
+		this.text = text;
+		this.error = error;
+	}
+	
+	/**
+	 * Returns the file that was read.
+	 * 
+	 * @return the file.
+	 */
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * Returns whether the file was read successfully.
+	 * 
+	 * @return true iff getText() holds the file's text.
+	 */
+	public boolean isSuccess() {
+		return error == null;
+	}
+	
+	/**
+	 * Returns the text read from the file.
+	 * 
+	 * @return the text in the file's image, or null if reading failed.
+	 */
+	public String getText() {
+		return text;
+	}
+	
+	/**
+	 * Returns the exception thrown while reading the file.
+	 * 
+	 * @return the exception, or null if reading succeeded.
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+	
+	@Override
+	public String toString() {
+		return file + ": " + (isSuccess() ? text : error);
+	}
+}
@@ -1,49 +1,47 @@
 import java.awt.Color;
-import java.awt.Point;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 /**
- * Reader can be used to read a line of text in an image. If no language is
+ * Reader can be used to read the text in an image, which may span several
+ * lines (the lines of the result are separated by '\n' and the words on each
+ * line by ' '). If no language is
  * provided, the default is English. If no background color is provided, the
  * default is white (meaning all non-white pixels in the image are considered "text").
+ * 
+ * A Reader may be shared by several threads: reads use an immutable snapshot
+ * of the configuration (see getRecognizer), which setLanguage,
+ * setBackground, setAutoBackground and setBinarization replace atomically.
  */
 
 public class Reader {
 	
 	/** 
-	 * Every character in the given images is boxed in the minimum area square
-	 * that fully contains it (extra pixels of color "background" are added as 
-	 * necessary to fix the ratio) and then that square is scaled down to a square
-	 * of dimensions SCALE_SIZE x SCALE_SIZE pixels prior to text recognition.
+	 * The current configuration of this Reader. Every configuration change
+	 * atomically publishes a new (immutable) Recognizer, so reads in progress
+	 * finish with the configuration they started with.
 	 */
-	private static final int SCALE_SIZE = 9;
-	
-	/** The language that is read off of the text in the image. */
-	private String language;
-	
-	/** 
-	 * The color of the background behind the text in the image
-	 *  (all pixels not this color are considered "text"). 
-	 */
-	private Color background;
-	
-	/** 
-	 * The mapping of all character patterns to the respective character.
-	 *  For example, {(4, 0), (4, 1), (4, 2), (4, 3), (4, 4),
-	 *  			  (4, 5), (4, 6), (4, 7), (4, 8)} --> 'l' 
-	 */
-	private Map<HashSet<Point>, Character> characters;	
+	private final AtomicReference<Recognizer> recognizer;
 	
 	/**
 	 * Constructs a new Reader object with language English and background color of white.
@@ -69,9 +67,8 @@ public class Reader {
 			throw new NullPointerException("Background color cannot be null...");
 		}
 		try {
-			this.characters = loadCharacters(language);
-			this.language = language;
-			this.background = background;
+			this.recognizer = new AtomicReference<>(
+					new Recognizer(language, background, LanguageRegistry.get(language)));
 		} catch (IOException e) {
 			throw new IllegalArgumentException("Illegal language: " + language);
 		}
@@ -90,8 +87,8 @@ public class Reader {
 			throw new NullPointerException("Language cannot be null...");
 		}
 		try {
-			this.characters = loadCharacters(language);
-			this.language = language;
+			GlyphIndex characters = LanguageRegistry.get(language);
+			recognizer.updateAndGet(r -> r.withLanguage(language, characters));
 		} catch (IOException e) {
 			throw new IllegalArgumentException("Illegal language: " + language);
 		}
@@ -103,7 +100,7 @@ public class Reader {
 	 * @return the current language of the Reader.
 	 */
 	public String getLanguage() {
-		return this.language;
+		return recognizer.get().getLanguage();
 	}
 	
 	/**
@@ -115,7 +112,7 @@ public class Reader {
 		if (background == null) {
 			throw new NullPointerException("Background color cannot be null...");
 		}
-		this.background = background;
+		recognizer.updateAndGet(r -> r.withBackground(background));
 	}
 	
 	/**
@@ -124,7 +121,63 @@ public class Reader {
 	 * @return the background color of this Reader.
 	 */
 	public Color getBackground() {
-		return this.background;
+		return recognizer.get().getBackground();
+	}
+	
+	/**
+	 * Sets whether this reader estimates the background color of each image
+	 * from a sample of its pixels (see BackgroundEstimator) instead of using
+	 * getBackground(). Off by default.
+	 * 
+	 * @param autoBackground Whether to estimate the background of each image.
+	 */
+	public void setAutoBackground(boolean autoBackground) {
+		recognizer.updateAndGet(r -> r.withAutoBackground(autoBackground));
+	}
+	
+	/**
+	 * Returns whether this Reader estimates the background color of each image.
+	 * 
+	 * @return true iff the background is estimated rather than configured.
+	 */
+	public boolean isAutoBackground() {
+		return recognizer.get().isAutoBackground();
+	}
+	
+	/**
+	 * Sets how this reader judges pixels to be text to <i>binarization</i>:
+	 * EXACT (the default) treats every pixel not of the background color as
+	 * text, while ADAPTIVE compares each pixel with the brightness of its
+	 * neighborhood, for scans with uneven lighting or noise (see Binarizer.Mode).
+	 * 
+	 * @param binarization How pixels are judged to be text.
+	 * @throws NullPointerException if binarization is null.
+	 */
+	public void setBinarization(Binarizer.Mode binarization) {
+		if (binarization == null) {
+			throw new NullPointerException("Binarization cannot be null...");
+		}
+		recognizer.updateAndGet(r -> r.withBinarization(binarization));
+	}
+	
+	/**
+	 * Returns how this Reader currently judges pixels to be text.
+	 * 
+	 * @return the binarization mode of this Reader.
+	 */
+	public Binarizer.Mode getBinarization() {
+		return recognizer.get().getBinarization();
+	}
+	
+	/**
+	 * Returns the current configuration of this Reader as an immutable
+	 * Recognizer, which may be shared by any number of threads. Later changes
+	 * to this Reader do not affect the returned Recognizer.
+	 * 
+	 * @return a snapshot of this Reader's configuration.
+	 */
+	public Recognizer getRecognizer() {
+		return recognizer.get();
 	}
 	
 	/**
@@ -136,94 +189,291 @@ public class Reader {
 	 * @throws IllegalArgumentException if f is invalid.
 	 */
 	public String read(File f) {
+		return read(decode(f));
+	}
+	
+	/**
+	 * Returns the text pictured in the encoded image (in any format supported by
+	 * ImageIO) read from <i>in</i>. The stream is read but not closed.
+	 * 
+	 * @param in The stream to read the encoded image from.
+	 * @return The text in the picture.
+	 * @throws NullPointerException if in is null.
+	 * @throws IllegalArgumentException if in does not contain a readable image.
+	 */
+	public String read(InputStream in) {
+		return read(decode(in));
+	}
+	
+	/**
+	 * Returns the text pictured in the encoded image (in any format supported by
+	 * ImageIO) held in the remaining bytes of <i>buf</i>. The position of buf
+	 * is left unchanged.
+	 * 
+	 * @param buf The buffer holding the encoded image.
+	 * @return The text in the picture.
+	 * @throws NullPointerException if buf is null.
+	 * @throws IllegalArgumentException if buf does not contain a readable image.
+	 */
+	public String read(ByteBuffer buf) {
+		if (buf == null) {
+			throw new NullPointerException("Buffer cannot be null...");
+		}
+		if (buf.hasArray()) {
+			// wrap the backing array directly rather than copying it
+			return read(new ByteArrayInputStream(buf.array(),
+					buf.arrayOffset() + buf.position(), buf.remaining()));
+		}
+		byte[] bytes = new byte[buf.remaining()];
+		buf.duplicate().get(bytes);
+		return read(new ByteArrayInputStream(bytes));
+	}
+	
+	/**
+	 * Returns the text pictured in the already decoded image <i>img</i>.
+	 * 
+	 * @param img The image to read text from.
+	 * @return The text in the picture.
+	 * @throws NullPointerException if img is null.
+	 */
+	public String read(BufferedImage img) {
+		return recognizer.get().read(img);
+	}
+	
+	/**
+	 * Reads every file in <i>files</i> in parallel on the common fork/join
+	 * pool (see readAll(List, ForkJoinPool)).
+	 * 
+	 * @param files The files to read text from.
+	 * @return The result of reading each file, in the order of files.
+	 * @throws NullPointerException if files is null.
+	 */
+	public List<ReadResult> readAll(List<File> files) {
+		return readAll(files, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Reads every file in <i>files</i>, decoding and recognizing the files in
+	 * parallel on the work-stealing pool <i>pool</i>. Every file is read with
+	 * this Reader's configuration at the time of the call. A file that cannot
+	 * be read does not stop the others: its result holds the exception instead.
+	 * 
+	 * @param files The files to read text from.
+	 * @param pool The pool to read the files on.
+	 * @return The result of reading each file, in the order of files.
+	 * @throws NullPointerException if either argument is null.
+	 */
+	public List<ReadResult> readAll(List<File> files, ForkJoinPool pool) {
+		if (files == null) {
+			throw new NullPointerException("Files cannot be null...");
+		}
+		if (pool == null) {
+			throw new NullPointerException("Pool cannot be null...");
+		}
+		File[] batch = files.toArray(new File[files.size()]);
+		ReadResult[] results = new ReadResult[batch.length];
+		pool.invoke(new ReadAllTask(recognizer.get(), batch, results, 0, batch.length));
+		return Arrays.asList(results);
+	}
+	
+	/**
+	 * Reads the image in file <i>f</i> asynchronously. The file is decoded on a
+	 * shared I/O executor (one virtual thread per task when the JVM supports
+	 * virtual threads, a pool of daemon threads otherwise) and its text is
+	 * recognized on a shared pool with one platform thread per processor, so
+	 * many reads can be in flight without tying up an OS thread each while
+	 * they wait on I/O. The file is read with this Reader's configuration at
+	 * the time of the call.
+	 * 
+	 * @param f The file to read text from.
+	 * @return A future completed with the text in the picture, or completed
+	 * 		   exceptionally with the exception read(f) would have thrown.
+	 * @throws NullPointerException if f is null.
+	 */
+	public CompletableFuture<String> readAsync(File f) {
+		if (f == null) {
+			throw new NullPointerException("Filename cannot be null...");
+		}
+		Recognizer r = recognizer.get();
+		return CompletableFuture.supplyAsync(() -> decode(f), AsyncExecutors.IO)
+				.thenApplyAsync(r::read, AsyncExecutors.CPU);
+	}
+	
+	/**
+	 * Reads the image in file <i>f</i> asynchronously, decoding and recognizing
+	 * it on <i>executor</i> with this Reader's configuration at the time of
+	 * the call. Large pages are classified in parallel (see Recognizer.read):
+	 * within executor if it is a ForkJoinPool, and in the common pool otherwise.
+	 * 
+	 * @param f The file to read text from.
+	 * @param executor The executor to read the file on.
+	 * @return A future completed with the text in the picture, or completed
+	 * 		   exceptionally with the exception read(f) would have thrown.
+	 * @throws NullPointerException if either argument is null.
+	 */
+	public CompletableFuture<String> readAsync(File f, Executor executor) {
+		if (f == null) {
+			throw new NullPointerException("Filename cannot be null...");
+		}
+		if (executor == null) {
+			throw new NullPointerException("Executor cannot be null...");
+		}
+		Recognizer r = recognizer.get();
+		return CompletableFuture.supplyAsync(() -> r.read(decode(f)), executor);
+	}
+	
+	/**
+	 * Returns the image decoded from file <i>f</i> (shared with RecognitionPipeline).
+	 * 
+	 * @throws NullPointerException if f is null.
+	 * @throws IllegalArgumentException if f is invalid.
+	 */
+	static BufferedImage decode(File f) {
 		if (f == null) {
 			throw new NullPointerException("Filename cannot be null...");
 		}
 		try {
-			// find pixel indices of left and right edges of each character in text
-			BufferedImage img = ImageIO.read(f);
-			List<Integer> charBreakpoints = new ArrayList<>();
-			// FIXME: Add support for multiple chars in an image
-			charBreakpoints.add(0);
-			charBreakpoints.add(img.getWidth());
-			
-			// recognize each character in text individually
-			String result = "";
-			for (int i = 0; i < charBreakpoints.size() - 1; i++) {
-				result += readChar(img, charBreakpoints.get(i), charBreakpoints.get(i + 1));
+			InputStream in = new FileInputStream(f);
+			try {
+				return decode(in);
+			} finally {
+				in.close();
 			}
-			return result;
 		} catch (IOException e) {
 			throw new IllegalArgumentException("Illegal file: " + f);
 		}
 	}
 	
 	/**
-	 * Returns the single character pictured in the portion of img with pixels
-	 * with x coordinates in the range [lo, hi). If the pixels in the
-	 * rectangle (lo, 0) (hi, 0) (hi, img.getHeight()), (lo, img.getHeight()) do
-	 * not represent a single character, the result is undefined.
+	 * Returns the image decoded from <i>in</i>, without closing it. The stream
+	 * is buffered in memory rather than in ImageIO's temporary disk cache.
 	 * 
-	 * @param img The BufferedImage from which to read.
-	 * @param lo The leftmost pixel from which to read (inclusive).
-	 * @param hi The rightmost pixel to read until (exclusive).
-	 * @requires non-null parameters and unique values of lo in [0, img.getWidth() - 1]
-	 * 			 and hi in [1, img.getWidth()], with lo <= hi.
-	 * @return The character written in the region of <i>img</i> between lo and hi.
+	 * @throws NullPointerException if in is null.
+	 * @throws IllegalArgumentException if in does not contain a readable image.
 	 */
-	private char readChar(BufferedImage img, int lo, int hi) {
-		assert lo >= 0 && lo < img.getWidth();
-		assert hi > 0 && hi <= img.getWidth();
-		assert lo <= hi;
+	private static BufferedImage decode(InputStream in) {
+		if (in == null) {
+			throw new NullPointerException("Input stream cannot be null...");
+		}
+		BufferedImage img;
+		try {
+			img = ImageIO.read(new MemoryCacheImageInputStream(in));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Illegal input stream: " + e.getMessage());
+		}
+		if (img == null) {
+			throw new IllegalArgumentException("Unsupported image format...");
+		}
+		return img;
+	}
+	
+	/**
+	 * The executors shared by every asynchronous read, created on first use.
+	 */
+	private static class AsyncExecutors {
+		
+		/** Runs the I/O-bound stage of a read (decoding the file). */
+		private static final ExecutorService IO = newIoExecutor();
+		
+		/**
+		 * Runs the CPU-bound stage of a read (recognizing the text), one thread
+		 * per processor. It is a ForkJoinPool so that the tasks a read splits
+		 * its page into (see Recognizer.read) are forked into it rather than
+		 * into the common pool.
+		 */
+		private static final ForkJoinPool CPU = new ForkJoinPool(
+				Runtime.getRuntime().availableProcessors(), cpuThreads(), null, false);
+		
+		/**
+		 * Returns an executor starting a virtual thread per task if this JVM
+		 * has them (Java 21 and later) and a growable pool of daemon threads
+		 * otherwise.
+		 */
+		private static ExecutorService newIoExecutor() {
+			try {
+				return (ExecutorService) Executors.class
+						.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				return Executors.newCachedThreadPool(daemonThreads("reader-io-"));
+			}
+		}
+		
+		/**
+		 * Returns a factory of (daemon) fork/join worker threads named
+		 * "reader-cpu-" followed by a sequence number.
+		 */
+		private static ForkJoinPool.ForkJoinWorkerThreadFactory cpuThreads() {
+			return pool -> {
+				ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				t.setName("reader-cpu-" + t.getPoolIndex());
+				return t;
+			};
+		}
 		
-		// FIXME: Put actual algorithm here...
-		return 'a';
+		/**
+		 * Returns a factory of daemon threads named <i>prefix</i> followed by a
+		 * sequence number, so idle pools never keep the JVM alive.
+		 */
+		private static ThreadFactory daemonThreads(String prefix) {
+			AtomicInteger count = new AtomicInteger();
+			return task -> {
+				Thread t = new Thread(task, prefix + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+		}
 	}
 	
 	/**
-	 * Returns a map of pixel patterns (Points on the square of dimension
-	 * SCALE_SIZE x SCALE_SIZE) to characters (based on the given language file).
-	 * 
-	 * The language file should be formatted as follows: tab-separated pixel
-	 * coordinates (each delimited by ', ') followed by a tab, followed by a
-	 * single character representing the character that the pixel pattern
-	 * containing all those coordinates represents (one character per line).
-	 * 
-	 * Example line:
-	 * 4, 0	4, 1	4, 2	4, 3	4, 4	4, 5	4, 6	4, 7	4, 8	1
-	 * 
-	 * @param language The language to load a map of character patterns for.
-	 * @requires a non-null language; a properly formatted language file "data/LANGUAGE.txt":
-	 * @return The map of pixels patterns to characters.
-	 * @throws IOException if the file data/<i>language</i>.txt cannot be found.
+	 * Reads the files in a range of a batch, splitting the range in half until
+	 * a single file is left so idle workers can steal the other halves.
 	 */
-	private Map<HashSet<Point>, Character> loadCharacters(String language) throws IOException {
-		assert language != null;
-		BufferedReader reader = new BufferedReader(new FileReader("data/" + language + ".txt"));
-		try {
-			Map<HashSet<Point>, Character> characters = new HashMap<>();
-			String inputLine = reader.readLine();
-			while (inputLine != null) {
-				// parse the data
-				String[] tokens = inputLine.split("\t");
-				assert tokens.length > 0: "Bad line " + inputLine + "!";
-				// first (length - 1) entries are points, last is actual character
-				Character c = tokens[tokens.length - 1].charAt(0);
-				for (int i = 0; i < tokens.length - 1; i++) {
-					HashSet<Point> points = new HashSet<>();
-					String[] pointTokens = tokens[i].split(", ");
-					assert pointTokens.length == 2: "Bad line " + inputLine + "!";
-					int x = Integer.parseInt(pointTokens[0]);
-					int y = Integer.parseInt(pointTokens[1]);
-					Point p = new Point(x, y);
-					points.add(p);
-					characters.put(points, c);
+	@SuppressWarnings("serial")
+	private static class ReadAllTask extends RecursiveAction {
+		
+		/** The configuration to read every file with. */
+		private final Recognizer recognizer;
+		
+		/** The whole batch of files. */
+		private final File[] files;
+		
+		/** The result of each file in the batch (filled in as files are read). */
+		private final ReadResult[] results;
+		
+		/** The first file of the range to read (inclusive). */
+		private final int lo;
+		
+		/** The last file of the range to read (exclusive). */
+		private final int hi;
+		
+		/**
+		 * Constructs a new ReadAllTask reading files [lo, hi) of <i>files</i>
+		 * into the same positions of <i>results</i>.
+		 */
+		public ReadAllTask(Recognizer recognizer, File[] files, ReadResult[] results, int lo, int hi) {
+			this.recognizer = recognizer;
+			this.files = files;
+			this.results = results;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		/** Reads the range, or splits it in two. */
+		@Override
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new ReadAllTask(recognizer, files, results, lo, mid),
+						new ReadAllTask(recognizer, files, results, mid, hi));
+				return;
+			}
+			for (int i = lo; i < hi; i++) {
+				try {
+					results[i] = new ReadResult(files[i], recognizer.read(decode(files[i])), null);
+				} catch (RuntimeException e) {
+					results[i] = new ReadResult(files[i], null, e);
 				}
-				inputLine = reader.readLine();
 			}
-			return characters;
-		} finally {
-			reader.close();
 		}
 	}
 }
\ No newline at end of file
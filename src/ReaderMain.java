@@ -1,8 +1,9 @@
-import javax.imageio.ImageIO;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.event.MouseInputAdapter;
 
@@ -15,12 +16,13 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GridLayout;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
 
 /**
  * ReaderMain can be used to create a graphical user interface
@@ -29,13 +31,16 @@ import java.io.IOException;
 
 public class ReaderMain {
 	
+	/** The width of the pen's stroke, in pixels. */
+	private static final int STROKE_WIDTH = 4;
+	
 	/** The Reader to read text with. */
 	private Reader r;
 	
 	/** The outer frame of the GUI. */
 	private JFrame frame;
 	
-	/** The canvas to write on (images automatically saved from this and read). */
+	/** The canvas to write on (images automatically read from this). */
 	private DrawingCanvas canvas;
 	
 	/** The panel directly below the canvas (containing the label and button). */
@@ -50,6 +55,15 @@ public class ReaderMain {
 	/** The button to clear any writing current on the canvas. */
 	private JButton clearButton;
 	
+	/** The check box choosing online (pen stroke) rather than image recognition. */
+	private JCheckBox onlineBox;
+	
+	/** Reads the canvas in the background whenever it changes. */
+	private RecognitionWorker worker;
+	
+	/** Reads the pen's strokes as they are written (used in online mode). */
+	private StrokeRecognizer strokes;
+	
 	/** Creates the GUI. */
 	@SuppressWarnings("unused")
 	public static void main(String[] args) {
@@ -67,6 +81,9 @@ public class ReaderMain {
 		canvas = new DrawingCanvas(400, 400);
 		label = new JLabel("Recognized text will appear here");
 		clearButton = new JButton("Clear");
+		onlineBox = new JCheckBox("Online");
+		worker = new RecognitionWorker();
+		strokes = new StrokeRecognizer(r.getRecognizer(), STROKE_WIDTH);
 		
 		// add listener to "clear" button
 		clearButton.addActionListener(new ActionListener() {
@@ -78,12 +95,28 @@ public class ReaderMain {
 			@Override
 			public void actionPerformed(ActionEvent e) {
 				canvas.clear();
-				frame.repaint();
+				strokes.clear();
+				textChanged();
+				canvas.repaint();
+			}
+		});
+		
+		// re-read the writing whenever the recognition mode changes
+		onlineBox.addActionListener(new ActionListener() {
+			/**
+			 * Shows the text read by the newly chosen mode.
+			 * 
+			 * @param e The ActionEvent representing the click on the check box.
+			 */
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				textChanged();
 			}
 		});
 		
 		// configure south panel
 		southwest.add(clearButton);
+		southwest.add(onlineBox);
 		south.add(southwest);
 		south.add(label);
 		
@@ -96,6 +129,37 @@ public class ReaderMain {
 		frame.setResizable(false);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.setVisible(true);
+		
+		// start reading the canvas in the background
+		Thread t = new Thread(worker, "Recognition");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Brings the label up to date with the writing after it changes: in
+	 * online mode by reading the strokes right away (which is cheap), and
+	 * otherwise by having the canvas read in the background.
+	 */
+	private void textChanged() {
+		if (onlineBox.isSelected()) {
+			showText(strokes.getText());
+		} else {
+			worker.markDirty();
+		}
+	}
+	
+	/**
+	 * Sets the label to <i>text</i>, unless it already shows it (so that
+	 * the label is only laid out and repainted when the text changes).
+	 * Must be called on the EDT.
+	 * 
+	 * @param text The recognized text.
+	 */
+	private void showText(String text) {
+		if (!text.equals(label.getText())) {
+			label.setText(text);
+		}
 	}
 	
 	/** 
@@ -118,15 +182,36 @@ public class ReaderMain {
 	@SuppressWarnings("serial")
 	private class DrawingCanvas extends JPanel {
 		
+		/** The width and height of the tiles snapshots are updated by. */
+		private static final int TILE = 32;
+		
 		/** The underlying image which is edited as the user draws on the canvas. */
 		private BufferedImage img;
 		
+		/** 
+		 * The last snapshot of the image, owned by the thread taking snapshots
+		 * and brought up to date one changed tile at a time (see snapshot).
+		 */
+		private BufferedImage snapshotImage;
+		
+		/** Whether each tile (in row-major order) changed since the last snapshot (guarded by img). */
+		private boolean[] dirtyTiles;
+		
+		/** The number of tiles in each row of tiles. */
+		private int tilesPerRow;
+		
+		/** Holds the pixels of one tile while it is copied into the snapshot. */
+		private int[] tileBuffer = new int[TILE * TILE];
+		
 		/** The width of this DrawingCanvas. */
 		private int width;
 		
 		/** The height of this DrawingCanvas. */
 		private int height;
 		
+		/** The region changed since the last snapshot (guarded by img). */
+		private Rectangle dirty = new Rectangle();
+		
 		/**
 		 * Constructs a new DrawingCanvas of width <i>width</i> and height <i>height</i>.
 		 * 
@@ -146,6 +231,12 @@ public class ReaderMain {
 			g.setColor(Color.WHITE);
 			g.fillRect(0, 0, img.getWidth(), img.getHeight());
 			
+			// set up snapshots (the first one copies every tile)
+			snapshotImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			tilesPerRow = (width + TILE - 1) / TILE;
+			dirtyTiles = new boolean[tilesPerRow * ((height + TILE - 1) / TILE)];
+			Arrays.fill(dirtyTiles, true);
+			
 			// add listeners
 			MouseInputAdapter mia = new Pen();
 			this.addMouseListener(mia);
@@ -163,23 +254,113 @@ public class ReaderMain {
 		}
 		
 		/** 
-		 * Paints the image on the panel.
+		 * Paints the image on the panel (only the part within the clip, which
+		 * is just the changed region when a segment is drawn).
 		 * 
 		 * @param g The graphics object to draw with.
 		 */
 		@Override
 		public void paintComponent(Graphics g) {
 			super.paintComponent(g);
-			g.drawImage(img, 0, 0, null);
+			Rectangle clip = g.getClipBounds();
+			if (clip == null) {
+				g.drawImage(img, 0, 0, null);
+				return;
+			}
+			int x2 = clip.x + clip.width;
+			int y2 = clip.y + clip.height;
+			g.drawImage(img, clip.x, clip.y, x2, y2, clip.x, clip.y, x2, y2, null);
 		}
 		
 		/**
 		 * Clears this DrawingCanvas.
 		 */
 		public void clear() {
-			Graphics g = img.getGraphics();
-			g.setColor(Color.WHITE);
-			g.fillRect(0, 0, img.getWidth(), img.getHeight());
+			synchronized (img) {
+				Graphics g = img.getGraphics();
+				g.setColor(Color.WHITE);
+				g.fillRect(0, 0, img.getWidth(), img.getHeight());
+				dirty = new Rectangle(width, height);
+				Arrays.fill(dirtyTiles, true);
+			}
+		}
+		
+		/**
+		 * Draws a line segment from <i>start</i> to <i>end</i> on this DrawingCanvas.
+		 * 
+		 * @param start The start point of the segment.
+		 * @param end The end point of the segment.
+		 * @return the region the segment may have changed (its bounding box
+		 * 		   padded by the stroke width).
+		 * @requires start != null and end != null.
+		 */
+		public Rectangle drawSegment(Point start, Point end) {
+			// the stroke (and its antialiasing) stays within a stroke width of the segment
+			Rectangle bounds = new Rectangle(start);
+			bounds.add(end);
+			bounds.grow(STROKE_WIDTH, STROKE_WIDTH);
+			synchronized (img) {
+				Graphics2D g2 = (Graphics2D) img.getGraphics();
+				g2.setColor(Color.BLACK);
+				g2.setStroke(new BasicStroke(STROKE_WIDTH));
+				g2.drawLine(start.x, start.y, end.x, end.y);
+				dirty = dirty.isEmpty() ? bounds : dirty.union(bounds);
+				markTiles(bounds);
+			}
+			return bounds;
+		}
+		
+		/**
+		 * Marks every tile meeting <i>bounds</i> as changed.
+		 * 
+		 * @requires the caller holds the lock on img.
+		 */
+		private void markTiles(Rectangle bounds) {
+			Rectangle r = bounds.intersection(new Rectangle(width, height));
+			if (r.isEmpty()) {
+				return;
+			}
+			for (int ty = r.y / TILE; ty <= (r.y + r.height - 1) / TILE; ty++) {
+				for (int tx = r.x / TILE; tx <= (r.x + r.width - 1) / TILE; tx++) {
+					dirtyTiles[ty * tilesPerRow + tx] = true;
+				}
+			}
+		}
+		
+		/**
+		 * Returns a snapshot of the current contents of this DrawingCanvas,
+		 * which later drawing does not affect, and sets <i>changed</i> to the
+		 * region changed since the previous snapshot (empty if none).
+		 * 
+		 * Snapshots are double-buffered: the same image is returned every time,
+		 * and only the tiles drawn on since the previous snapshot are copied
+		 * into it, so painting waits for a copy the size of the change rather
+		 * than of the canvas. The snapshot stays consistent until the next call,
+		 * so snapshots must only ever be taken by one thread.
+		 * 
+		 * @param changed The rectangle to overwrite with the changed region.
+		 * @return a snapshot of the canvas image.
+		 * @requires changed != null.
+		 */
+		public BufferedImage snapshot(Rectangle changed) {
+			WritableRaster from = img.getRaster();
+			WritableRaster to = snapshotImage.getRaster();
+			synchronized (img) {
+				for (int t = 0; t < dirtyTiles.length; t++) {
+					if (dirtyTiles[t]) {
+						int x = (t % tilesPerRow) * TILE;
+						int y = (t / tilesPerRow) * TILE;
+						int w = Math.min(TILE, width - x);
+						int h = Math.min(TILE, height - y);
+						from.getDataElements(x, y, w, h, tileBuffer);
+						to.setDataElements(x, y, w, h, tileBuffer);
+						dirtyTiles[t] = false;
+					}
+				}
+				changed.setBounds(dirty);
+				dirty = new Rectangle();
+			}
+			return snapshotImage;
 		}
 		
 		/**
@@ -203,6 +384,20 @@ public class ReaderMain {
 		    @Override
 		    public void mousePressed(MouseEvent e) {
 		        start = e.getPoint();
+		        strokes.beginStroke(start.x, start.y, e.getWhen());
+		    }
+		    
+		    /**
+		     * Responds to the release of the mouse by ending the stroke being
+		     * written.
+		     * 
+		     * @param e The MouseEvent representing the mouse release.
+		     * @requires e != null
+		     */
+		    @Override
+		    public void mouseReleased(MouseEvent e) {
+		        strokes.endStroke();
+		        textChanged();
 		    }
 		    
 		    /**
@@ -216,23 +411,96 @@ public class ReaderMain {
 		    public void mouseDragged(MouseEvent e) {
 		    	// draw image
 		        end = e.getPoint();
-		        Graphics2D g2 = (Graphics2D) img.getGraphics();
-		        g2.setColor(Color.BLACK);
-		        g2.setStroke(new BasicStroke(4));
-		        g2.drawLine(start.x, start.y, end.x, end.y);
+		        Rectangle changed = canvas.drawSegment(start, end);
+		        strokes.addPoint(end.x, end.y, e.getWhen());
 		        
-		        // read image
-		        try {
-			        // read image and reset label to proper text
-		        	File f = new File("src/temp.png");
-					ImageIO.write(img, "png", f);
-			        label.setText(r.read(f));
-			        frame.repaint();
-			        start = end;
-				} catch (IOException ioe) {
-					// won't happen
-				}
+		        // read the writing (in image mode, the label updates once it is read)
+		        textChanged();
+		        canvas.repaint(changed);
+		        start = end;
 		    }
 		}
 	}
+	
+	/**
+	 * Reads the canvas on a background thread, so drawing never waits for
+	 * recognition. Requests are coalesced, latest wins: marking the canvas
+	 * dirty any number of times while a read is under way yields a single
+	 * further read, of the canvas as it is when that read starts, and the
+	 * label is only ever set (on the event dispatch thread) to the text of
+	 * the newest snapshot read.
+	 */
+	private class RecognitionWorker implements Runnable {
+		
+		/** Whether the canvas has changed since the last snapshot was taken. */
+		private boolean dirty;
+		
+		/** The number of snapshots taken so far. */
+		private long generation;
+		
+		/** The generation of the snapshot whose text the label shows (EDT only). */
+		private long shown;
+		
+		/** Reads each snapshot, reusing what it can of the previous read. */
+		private IncrementalReader reader = new IncrementalReader();
+		
+		/**
+		 * Records that the canvas has changed and wakes the worker. Returns at
+		 * once; may be called from any thread.
+		 */
+		public synchronized void markDirty() {
+			dirty = true;
+			notifyAll();
+		}
+		
+		/**
+		 * Reads a snapshot of the canvas each time it is marked dirty, until
+		 * the thread is interrupted. A read that fails is reported in the label
+		 * and the next one starts afresh.
+		 */
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					long current;
+					synchronized (this) {
+						while (!dirty) {
+							wait();
+						}
+						dirty = false;
+						current = ++generation;
+					}
+					String text;
+					try {
+						Rectangle changed = new Rectangle();
+						BufferedImage snapshot = canvas.snapshot(changed);
+						text = reader.read(r.getRecognizer(), snapshot, changed);
+					} catch (RuntimeException e) {
+						// what the failed read kept may be stale, so read afresh next time
+						reader = new IncrementalReader();
+						text = "Recognition failed: " + e;
+					}
+					String result = text;
+					SwingUtilities.invokeLater(() -> show(current, result));
+				}
+			} catch (InterruptedException e) {
+				// stop reading
+			}
+		}
+		
+		/**
+		 * Sets the label to <i>text</i>, read from snapshot <i>current</i>,
+		 * unless a newer snapshot's text is already shown or online mode is
+		 * selected (the label then shows the strokes' text, and unselecting it
+		 * reads the canvas again). Runs on the EDT.
+		 */
+		private void show(long current, String text) {
+			if (current > shown) {
+				shown = current;
+				if (!onlineBox.isSelected()) {
+					showText(text);
+				}
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,311 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * RecognitionPipeline reads a stream of image files as a series of stages
+ * (decode, binarize, segment, normalize, classify, assemble) connected by
+ * bounded queues. Each stage runs on its own configurable number of worker
+ * threads, so a slow stage (typically decoding) gets more workers without
+ * starving the others.
+ * 
+ * Every queue holds at most a fixed number of images. A stage whose output
+ * queue is full blocks until the next stage catches up, and submit blocks
+ * while the first queue is full, so the memory held by images in flight stays
+ * bounded no matter how bursty the submissions are.
+ * 
+ * Workers start on the first submit; close the pipeline to stop them.
+ */
+
+public class RecognitionPipeline implements AutoCloseable {
+	
+	/** The stages of the pipeline, in order. */
+	public enum Stage {
+		/** Decodes the image file. */
+		DECODE,
+		/** Reduces the image to text and background pixels. */
+		BINARIZE,
+		/** Splits the text into glyphs laid out in reading order. */
+		SEGMENT,
+		/** Scales every glyph down to a Glyph pattern. */
+		NORMALIZE,
+		/** Classifies every Glyph pattern as a character. */
+		CLASSIFY,
+		/** Assembles the characters into the text of the image. */
+		ASSEMBLE
+	}
+	
+	/** The configuration every image is read with. */
+	private final Recognizer recognizer;
+	
+	/** The input queue of each stage. */
+	private final List<BlockingQueue<Job>> queues;
+	
+	/** The number of workers of each stage. */
+	private final int[] parallelism;
+	
+	/** The workers of every stage (empty until the pipeline starts). */
+	private final List<Thread> workers;
+	
+	/** Whether the pipeline has been closed. */
+	private boolean closed;
+	
+	/** The number of submitted images not yet finished (guarded by this). */
+	private int inFlight;
+	
+	/**
+	 * Constructs a new RecognitionPipeline reading images with
+	 * <i>recognizer</i>, with one worker per stage and room for
+	 * <i>capacity</i> images in each queue.
+	 * 
+	 * @param recognizer The configuration to read every image with.
+	 * @param capacity The number of images each queue holds.
+	 * @throws NullPointerException if recognizer is null.
+	 * @throws IllegalArgumentException if capacity is not positive.
+	 */
+	public RecognitionPipeline(Recognizer recognizer, int capacity) {
+		if (recognizer == null) {
+			throw new NullPointerException("Recognizer cannot be null...");
+		}
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive...");
+		}
+		this.recognizer = recognizer;
+		this.queues = new ArrayList<>();
+		this.parallelism = new int[Stage.values().length];
+		for (int i = 0; i < parallelism.length; i++) {
+			queues.add(new ArrayBlockingQueue<Job>(capacity));
+			parallelism[i] = 1;
+		}
+		this.workers = new ArrayList<>();
+	}
+	
+	/**
+	 * Sets the number of worker threads of <i>stage</i> to <i>threads</i>.
+	 * 
+	 * @param stage The stage to configure.
+	 * @param threads The number of workers of the stage.
+	 * @throws NullPointerException if stage is null.
+	 * @throws IllegalArgumentException if threads is not positive.
+	 * @throws IllegalStateException if the pipeline has already started.
+	 */
+	public synchronized void setParallelism(Stage stage, int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Threads must be positive...");
+		}
+		if (!workers.isEmpty() || closed) {
+			throw new IllegalStateException("Pipeline already started...");
+		}
+		parallelism[stage.ordinal()] = threads;
+	}
+	
+	/**
+	 * Returns the number of worker threads of <i>stage</i>.
+	 * 
+	 * @param stage The stage.
+	 * @return the number of workers of the stage.
+	 * @throws NullPointerException if stage is null.
+	 */
+	public synchronized int getParallelism(Stage stage) {
+		return parallelism[stage.ordinal()];
+	}
+	
+	/**
+	 * Submits the image in file <i>f</i> to be read, blocking while the first
+	 * stage's queue is full.
+	 * 
+	 * @param f The file to read text from.
+	 * @return A future completed with the text in the picture, or completed
+	 * 		   exceptionally with the exception or error reading it threw.
+	 * @throws NullPointerException if f is null.
+	 * @throws IllegalStateException if the pipeline has been closed.
+	 * @throws InterruptedException if interrupted while waiting for room.
+	 */
+	public CompletableFuture<String> submit(File f) throws InterruptedException {
+		if (f == null) {
+			throw new NullPointerException("Filename cannot be null...");
+		}
+		Job job = new Job(f);
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("Pipeline closed...");
+			}
+			if (workers.isEmpty()) {
+				start();
+			}
+			inFlight++;
+		}
+		try {
+			queues.get(0).put(job);
+		} catch (InterruptedException e) {
+			finish();
+			throw e;
+		}
+		return job.result;
+	}
+	
+	/**
+	 * Stops accepting images, waits for every submitted image to finish and
+	 * stops the workers. If interrupted while waiting, images still in flight
+	 * are cancelled.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			try {
+				while (inFlight > 0) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		for (BlockingQueue<Job> queue : queues) {
+			for (Job job = queue.poll(); job != null; job = queue.poll()) {
+				job.result.completeExceptionally(new CancellationException("Pipeline closed..."));
+				finish();
+			}
+		}
+	}
+	
+	/**
+	 * Starts the workers of every stage.
+	 * 
+	 * @requires the caller holds this object's lock.
+	 */
+	private void start() {
+		for (Stage stage : Stage.values()) {
+			for (int i = 0; i < parallelism[stage.ordinal()]; i++) {
+				Thread worker = new Thread(() -> work(stage),
+						"pipeline-" + stage.name().toLowerCase() + "-" + i);
+				worker.setDaemon(true);
+				workers.add(worker);
+				worker.start();
+			}
+		}
+	}
+	
+	/**
+	 * Runs <i>stage</i> on images from its queue, passing each on to the next
+	 * stage's queue, until interrupted.
+	 */
+	private void work(Stage stage) {
+		BlockingQueue<Job> in = queues.get(stage.ordinal());
+		BlockingQueue<Job> out = stage == Stage.ASSEMBLE ? null : queues.get(stage.ordinal() + 1);
+		while (true) {
+			Job job;
+			try {
+				job = in.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			// the job leaves the pipeline here unless it is passed on, even if the
+			// stage throws an Error, so close() never waits for it forever
+			boolean passed = false;
+			try {
+				run(stage, job);
+				if (out != null) {
+					out.put(job);
+					passed = true;
+				}
+			} catch (InterruptedException e) {
+				job.result.completeExceptionally(new CancellationException("Pipeline closed..."));
+				return;
+			} catch (Throwable e) {
+				job.result.completeExceptionally(e);
+			} finally {
+				if (!passed) {
+					finish();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Runs <i>stage</i> on <i>job</i>, dropping the state no later stage needs.
+	 */
+	private void run(Stage stage, Job job) {
+		switch (stage) {
+			case DECODE:
+				job.image = Reader.decode(job.file);
+				break;
+			case BINARIZE:
+				job.text = recognizer.binarize(job.image);
+				job.image = null;
+				break;
+			case SEGMENT:
+				job.page = recognizer.segment(job.text);
+				job.text = null;
+				break;
+			case NORMALIZE:
+				job.glyphs = new Glyph[job.page.getGlyphCount()];
+				for (int i = 0; i < job.glyphs.length; i++) {
+					job.glyphs[i] = recognizer.normalize(job.page, i);
+				}
+				break;
+			case CLASSIFY:
+				job.chars = new char[job.glyphs.length];
+				for (int i = 0; i < job.chars.length; i++) {
+					job.chars[i] = recognizer.classify(job.page, i, job.glyphs[i]);
+				}
+				job.glyphs = null;
+				break;
+			case ASSEMBLE:
+				job.result.complete(job.page.assemble(job.chars));
+				break;
+		}
+	}
+	
+	/**
+	 * Records that an image has left the pipeline.
+	 */
+	private synchronized void finish() {
+		inFlight--;
+		notifyAll();
+	}
+	
+	/**
+	 * The state of one image as it moves through the pipeline. Each field is
+	 * written by one stage and read (then dropped) by a later one; the queues
+	 * between stages publish the writes safely.
+	 */
+	private static class Job {
+		
+		/** The file to read. */
+		private final File file;
+		
+		/** Completed with the text of the image when the last stage finishes. */
+		private final CompletableFuture<String> result = new CompletableFuture<>();
+		
+		/** The decoded image. */
+		private BufferedImage image;
+		
+		/** The binarized image. */
+		private BinaryImage text;
+		
+		/** The glyphs in reading order. */
+		private PageLayout page;
+		
+		/** The normalized pattern of each glyph. */
+		private Glyph[] glyphs;
+		
+		/** The character of each glyph. */
+		private char[] chars;
+		
+		/**
+		 * Constructs a new Job reading <i>file</i>.
+		 */
+		public Job(File file) {
+			this.file = file;
+		}
+	}
+}
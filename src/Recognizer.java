@@ -0,0 +1,545 @@
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Recognizer is an immutable snapshot of a Reader's configuration (its
+ * language, background color, binarization mode and character patterns) that reads text from
+ * decoded images. A Recognizer never changes after construction, so a single
+ * instance may be shared by any number of threads reading concurrently;
+ * "changing" one returns a new Recognizer instead.
+ */
+
+public final class Recognizer {
+	
+	/** 
+	 * The most templates the coarse pass of classification hands on to the
+	 * finer levels of a language's pyramid (see classify).
+	 */
+	private static final int CANDIDATES = 8;
+	
+	/** 
+	 * How many more cells than the nearest template a template may differ
+	 * from a glyph in on the coarse grid and still be a candidate.
+	 */
+	private static final int SLACK = 6;
+	
+	/** 
+	 * The scratch buffers of every thread reading glyphs, so that reading a
+	 * glyph allocates nothing once its thread has read a few (see Scratch).
+	 */
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+	
+	/** The language that is read off of the text in the image. */
+	private final String language;
+	
+	/** 
+	 * The color of the background behind the text in the image
+	 *  (all pixels not this color are considered "text"). 
+	 */
+	private final Color background;
+	
+	/** 
+	 * Whether the background color of each image is estimated from the image
+	 *  itself (see BackgroundEstimator) rather than taken to be background.
+	 */
+	private final boolean autoBackground;
+	
+	/** 
+	 * How pixels are judged to be text: by differing from the background
+	 *  color exactly or by adaptive thresholding (see Binarizer.Mode).
+	 */
+	private final Binarizer.Mode binarization;
+	
+	/** 
+	 * The mapping of all character patterns to the respective character (shared
+	 *  with every Recognizer of the same language, see LanguageRegistry).
+	 *  For example, {(4, 0), (4, 1), (4, 2), (4, 3), (4, 4),
+	 *  			  (4, 5), (4, 6), (4, 7), (4, 8)} --> '1' 
+	 */
+	private final GlyphIndex characters;
+	
+	/**
+	 * Constructs a new Recognizer reading text of <i>language</i>, whose
+	 * character patterns are <i>characters</i>, on background color
+	 * <i>background</i>, with exact binarization.
+	 * 
+	 * @param language The language of the text to be read.
+	 * @param background The color of the "background" (all non-text pixels).
+	 * @param characters The character patterns of the language.
+	 * @throws NullPointerException if any argument is null.
+	 */
+	public Recognizer(String language, Color background, GlyphIndex characters) {
+		this(language, background, false, Binarizer.Mode.EXACT, characters);
+	}
+	
+	/**
+	 * Constructs a new Recognizer reading text of <i>language</i>, whose
+	 * character patterns are <i>characters</i>, on background color
+	 * <i>background</i> (or on the background estimated from each image, if
+	 * <i>autoBackground</i>), binarizing images with <i>binarization</i>.
+	 * 
+	 * @param language The language of the text to be read.
+	 * @param background The color of the "background" (all non-text pixels in
+	 * 		  EXACT mode; in ADAPTIVE mode, only whether it is light or dark matters).
+	 * @param autoBackground Whether to estimate the background of each image
+	 * 		  instead of using background.
+	 * @param binarization How pixels are judged to be text.
+	 * @param characters The character patterns of the language.
+	 * @throws NullPointerException if any object argument is null.
+	 */
+	public Recognizer(String language, Color background, boolean autoBackground,
+			Binarizer.Mode binarization, GlyphIndex characters) {
+		if (language == null) {
+			throw new NullPointerException("Language cannot be null...");
+		}
+		if (background == null) {
+			throw new NullPointerException("Background color cannot be null...");
+		}
+		if (binarization == null) {
+			throw new NullPointerException("Binarization cannot be null...");
+		}
+		if (characters == null) {
+			throw new NullPointerException("Characters cannot be null...");
+		}
+		this.language = language;
+		this.background = background;
+		this.autoBackground = autoBackground;
+		this.binarization = binarization;
+		this.characters = characters;
+	}
+	
+	/**
+	 * Returns a Recognizer like this one but reading text of <i>language</i>,
+	 * whose character patterns are <i>characters</i>.
+	 * 
+	 * @param language The language of the text to be read.
+	 * @param characters The character patterns of the language.
+	 * @return the reconfigured Recognizer.
+	 * @throws NullPointerException if either argument is null.
+	 */
+	public Recognizer withLanguage(String language, GlyphIndex characters) {
+		return new Recognizer(language, background, autoBackground, binarization, characters);
+	}
+	
+	/**
+	 * Returns a Recognizer like this one but with background color <i>background</i>.
+	 * 
+	 * @param background The color of the "background" (all non-text pixels).
+	 * @return the reconfigured Recognizer.
+	 * @throws NullPointerException if background is null.
+	 */
+	public Recognizer withBackground(Color background) {
+		return new Recognizer(language, background, autoBackground, binarization, characters);
+	}
+	
+	/**
+	 * Returns a Recognizer like this one but estimating the background color
+	 * of each image iff <i>autoBackground</i>.
+	 * 
+	 * @param autoBackground Whether to estimate the background of each image.
+	 * @return the reconfigured Recognizer.
+	 */
+	public Recognizer withAutoBackground(boolean autoBackground) {
+		return new Recognizer(language, background, autoBackground, binarization, characters);
+	}
+	
+	/**
+	 * Returns a Recognizer like this one but binarizing images with <i>binarization</i>.
+	 * 
+	 * @param binarization How pixels are judged to be text.
+	 * @return the reconfigured Recognizer.
+	 * @throws NullPointerException if binarization is null.
+	 */
+	public Recognizer withBinarization(Binarizer.Mode binarization) {
+		return new Recognizer(language, background, autoBackground, binarization, characters);
+	}
+	
+	/**
+	 * Returns the language of this Recognizer.
+	 * 
+	 * @return the language of the Recognizer.
+	 */
+	public String getLanguage() {
+		return language;
+	}
+	
+	/**
+	 * Returns the background color of this Recognizer.
+	 * 
+	 * @return the background color of the Recognizer.
+	 */
+	public Color getBackground() {
+		return background;
+	}
+	
+	/**
+	 * Returns whether this Recognizer estimates the background color of each image.
+	 * 
+	 * @return true iff the background is estimated rather than configured.
+	 */
+	public boolean isAutoBackground() {
+		return autoBackground;
+	}
+	
+	/**
+	 * Returns the binarization mode of this Recognizer.
+	 * 
+	 * @return how the Recognizer judges pixels to be text.
+	 */
+	public Binarizer.Mode getBinarization() {
+		return binarization;
+	}
+	
+	/**
+	 * Returns the number of levels of the pyramid this Recognizer's character
+	 * patterns are stored at (see Glyph.pyramid).
+	 * 
+	 * @return the number of levels (1 if only the coarse grid is stored).
+	 */
+	public int getLevelCount() {
+		return characters.getLevelCount();
+	}
+	
+	/**
+	 * Returns the grid size of level <i>level</i> of the pyramid this
+	 * Recognizer's character patterns are stored at.
+	 * 
+	 * @param level The level, in [0, getLevelCount()).
+	 * @return the width and height (in cells) of the level's grid.
+	 */
+	public int getLevelSize(int level) {
+		return characters.getLevelSize(level);
+	}
+	
+	/**
+	 * Returns the text pictured in the already decoded image <i>img</i>.
+	 * Pages of many glyphs are classified in parallel by fork/join tasks,
+	 * which run in the ForkJoinPool of the calling thread, or in the common
+	 * pool if the caller is not a fork/join worker.
+	 * 
+	 * @param img The image to read text from.
+	 * @return The text in the picture.
+	 * @throws NullPointerException if img is null.
+	 */
+	public String read(BufferedImage img) {
+		if (img == null) {
+			throw new NullPointerException("Image cannot be null...");
+		}
+		// separate the text into glyphs (one per character) in reading order
+		PageLayout page = segment(binarize(img));
+		
+		// recognize the characters in parallel, each into its own slot
+		char[] chars = new char[page.getGlyphCount()];
+		new ClassifyTask(page, chars, 0, chars.length).invoke();
+		return page.assemble(chars);
+	}
+	
+	/**
+	 * Returns <i>img</i> reduced to text and background pixels (the first
+	 * stage of reading an image), according to this Recognizer's binarization
+	 * mode. With an estimated background, adaptive binarization also picks
+	 * dark-on-light or light-on-dark text from the estimate.
+	 * 
+	 * @param img The image to binarize.
+	 * @return The text pixels of img.
+	 * @throws NullPointerException if img is null.
+	 */
+	public BinaryImage binarize(BufferedImage img) {
+		int bg = autoBackground ? BackgroundEstimator.estimate(img) : background.getRGB();
+		if (binarization == Binarizer.Mode.ADAPTIVE) {
+			return Binarizer.binarizeAdaptive(img, BackgroundEstimator.isDarkText(bg));
+		}
+		return Binarizer.binarize(img, bg);
+	}
+	
+	/**
+	 * Returns the glyphs (one per character) of the binarized image
+	 * <i>text</i> laid out in reading order.
+	 * 
+	 * @param text The binarized image.
+	 * @return The layout of the glyphs of text.
+	 * @throws NullPointerException if text is null.
+	 */
+	public PageLayout segment(BinaryImage text) {
+		ComponentLabeler components = new ComponentLabeler(text);
+		return new PageLayout(components, LayoutAnalyzer.analyze(text, components));
+	}
+	
+	/**
+	 * Returns glyph <i>i</i> (in reading order) of <i>page</i> boxed in the
+	 * minimum area square and scaled down to a Glyph on the Glyph.SIZE x
+	 * Glyph.SIZE grid (see GlyphNormalizer).
+	 * 
+	 * @param page The layout of the page.
+	 * @param i The position of the glyph in reading order.
+	 * @requires non-null page with non-null getComponents() and i in
+	 * 		  [0, page.getGlyphCount()).
+	 * @return The normalized pattern of the glyph.
+	 */
+	public Glyph normalize(PageLayout page, int i) {
+		return normalize(page, i, Glyph.SIZE);
+	}
+	
+	/**
+	 * Returns glyph <i>i</i> (in reading order) of <i>page</i> boxed in the
+	 * minimum area square and scaled down to a Glyph on the <i>size</i> x
+	 * <i>size</i> grid (see GlyphNormalizer). A glyph whose box overlaps
+	 * another glyph's is first separated from it.
+	 * 
+	 * @param page The layout of the page.
+	 * @param i The position of the glyph in reading order.
+	 * @param size The width and height of the grid, in [1, Glyph.MAX_SIZE].
+	 * @requires non-null page with non-null getComponents() and i in
+	 * 		  [0, page.getGlyphCount()).
+	 * @return The normalized pattern of the glyph.
+	 * @throws IllegalArgumentException if size is out of range.
+	 */
+	public Glyph normalize(PageLayout page, int i, int size) {
+		Glyph result = new Glyph(size);
+		normalize(page, i, result, SCRATCH.get());
+		return result;
+	}
+	
+	/**
+	 * Sets <i>result</i> to glyph <i>i</i> (in reading order) of <i>page</i>
+	 * normalized on the grid of result, working in <i>scratch</i>.
+	 * 
+	 * @requires non-null arguments and i in [0, page.getGlyphCount()).
+	 */
+	private void normalize(PageLayout page, int i, Glyph result, Scratch scratch) {
+		assert i >= 0 && i < page.getGlyphCount();
+		ComponentLabeler components = page.getComponents();
+		int glyph = page.getGlyph(i);
+		Rectangle box = components.getBox(glyph, scratch.box);
+		if (components.isIsolated(glyph)) {
+			GlyphNormalizer.normalize(components.getImage(), box, result, scratch.cells);
+		} else {
+			BinaryImage mask = scratch.mask(box.width, box.height);
+			components.getMask(glyph, mask);
+			scratch.maskBox.setBounds(0, 0, box.width, box.height);
+			GlyphNormalizer.normalize(mask, scratch.maskBox, result, scratch.cells);
+		}
+	}
+	
+	/**
+	 * Returns the character whose known pattern is at the smallest Hamming
+	 * distance from <i>pattern</i> on the coarse grid alone.
+	 * 
+	 * @param pattern The normalized pattern of a glyph, on the Glyph.SIZE x
+	 * 		  Glyph.SIZE grid.
+	 * @return The character of the closest pattern, or ' ' if no pattern is known.
+	 * @throws NullPointerException if pattern is null.
+	 */
+	public char classify(Glyph pattern) {
+		int c = characters.nearest(pattern);
+		return c == GlyphIndex.NOT_FOUND ? ' ' : (char) c;
+	}
+	
+	/**
+	 * Returns the character pictured by glyph <i>i</i> (in reading order) of
+	 * <i>page</i>, whose pattern on the coarse grid is <i>pattern</i>.
+	 * 
+	 * Classification runs coarse to fine: the coarse pass keeps at most
+	 * CANDIDATES templates within SLACK cells of the nearest one, and each
+	 * finer level of the language's pyramid halves the survivors (keeping
+	 * the nearest at that level) until one is left. The glyph is normalized
+	 * at a finer level only if more than one candidate survives to it, so
+	 * glyphs the coarse grid settles cost no more than with a single level.
+	 * 
+	 * @param page The layout of the page from which to read.
+	 * @param i The position of the glyph in reading order.
+	 * @param pattern The normalized pattern of the glyph (see normalize(page, i)).
+	 * @requires non-null page and pattern and i in [0, page.getGlyphCount()).
+	 * @return The character written by the glyph, or ' ' if no pattern is known.
+	 */
+	public char classify(PageLayout page, int i, Glyph pattern) {
+		return classify(page, i, pattern, null, SCRATCH.get());
+	}
+	
+	/**
+	 * Returns the character whose known patterns are nearest to
+	 * <i>pyramid</i>, a glyph drawn at every level of this Recognizer's
+	 * pyramid (pyramid[l] on the grid of getLevelSize(l)), classifying coarse
+	 * to fine as classify(page, i, pattern) does.
+	 * 
+	 * @param pyramid The pattern of the glyph at every level.
+	 * @return The character of the closest pattern, or ' ' if no pattern is known.
+	 * @throws NullPointerException if pyramid or any of its patterns is null.
+	 * @throws IllegalArgumentException if pyramid does not have a pattern on
+	 * 		   the grid of every level.
+	 */
+	public char classify(Glyph[] pyramid) {
+		if (pyramid.length != characters.getLevelCount()) {
+			throw new IllegalArgumentException("Expected " + characters.getLevelCount() + " levels...");
+		}
+		return classify(null, 0, pyramid[0], pyramid, SCRATCH.get());
+	}
+	
+	/**
+	 * Returns the character pictured by glyph <i>i</i> (in reading order) of
+	 * <i>page</i>, whose pattern on the coarse grid is <i>pattern</i>, working
+	 * in <i>scratch</i> (see classify(page, i, pattern)). If <i>pyramid</i> is
+	 * not null, the finer patterns are taken from it instead of normalized
+	 * from page.
+	 * 
+	 * @requires non-null scratch and pattern, which is not one of the finer
+	 * 			 patterns of scratch, and either non-null page and i in
+	 * 			 [0, page.getGlyphCount()) or a pattern at every level in pyramid.
+	 */
+	private char classify(PageLayout page, int i, Glyph pattern, Glyph[] pyramid, Scratch scratch) {
+		int levels = characters.getLevelCount();
+		if (levels == 1) {
+			return classify(pattern);
+		}
+		int[] survivors = scratch.survivors;
+		int[] distances = scratch.distances;
+		int n = characters.candidates(pattern, SLACK, survivors, distances);
+		if (n == 0) {
+			return ' ';
+		}
+		for (int level = 1; level < levels && n > 1; level++) {
+			Glyph fine;
+			if (pyramid != null) {
+				fine = pyramid[level];
+			} else {
+				fine = scratch.pattern(characters.getLevelSize(level));
+				normalize(page, i, fine, scratch);
+			}
+			for (int k = 0; k < n; k++) {
+				distances[k] = characters.distance(survivors[k], fine);
+				// insertion sort by distance at this level, ties in coarse order
+				for (int j = k; j > 0 && distances[j - 1] > distances[j]; j--) {
+					int t = survivors[j];
+					survivors[j] = survivors[j - 1];
+					survivors[j - 1] = t;
+					int d = distances[j];
+					distances[j] = distances[j - 1];
+					distances[j - 1] = d;
+				}
+			}
+			n = level == levels - 1 ? 1 : (n + 1) / 2;
+		}
+		return characters.getChar(survivors[0]);
+	}
+	
+	/**
+	 * Returns the single character pictured by glyph <i>i</i> (in reading
+	 * order) of <i>page</i>. If the glyph does not represent a single
+	 * character, the result is undefined.
+	 * 
+	 * Every pattern and table is taken from the calling thread's Scratch, so
+	 * in steady state reading a character allocates nothing.
+	 * 
+	 * @param page The layout of the page from which to read.
+	 * @param i The position of the glyph in reading order.
+	 * @requires non-null page with non-null getComponents() and i in
+	 * 		  [0, page.getGlyphCount()).
+	 * @return The character written by the glyph, or ' ' if no pattern is known.
+	 */
+	public char readChar(PageLayout page, int i) {
+		Scratch scratch = SCRATCH.get();
+		Glyph pattern = scratch.pattern(Glyph.SIZE);
+		normalize(page, i, pattern, scratch);
+		return classify(page, i, pattern, null, scratch);
+	}
+	
+	/**
+	 * Classifies a range of the glyphs of an image, splitting the range in
+	 * half until it is short enough to classify sequentially.
+	 */
+	@SuppressWarnings("serial")
+	private class ClassifyTask extends RecursiveAction {
+		
+		/** Ranges of at most this many glyphs are classified sequentially. */
+		private static final int THRESHOLD = 32;
+		
+		/** The layout of the page. */
+		private final PageLayout page;
+		
+		/** The character of each glyph (filled in as glyphs are classified). */
+		private final char[] chars;
+		
+		/** The first glyph of the range to classify (inclusive). */
+		private final int lo;
+		
+		/** The last glyph of the range to classify (exclusive). */
+		private final int hi;
+		
+		/**
+		 * Constructs a new ClassifyTask classifying glyphs [lo, hi) of
+		 * <i>page</i> into the same positions of <i>chars</i>.
+		 */
+		public ClassifyTask(PageLayout page, char[] chars, int lo, int hi) {
+			this.page = page;
+			this.chars = chars;
+			this.lo = lo;
+			this.hi = hi;
+		}
+		
+		/** Classifies the range, or splits it in two. */
+		@Override
+		protected void compute() {
+			if (hi - lo > THRESHOLD) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new ClassifyTask(page, chars, lo, mid), new ClassifyTask(page, chars, mid, hi));
+				return;
+			}
+			for (int i = lo; i < hi; i++) {
+				chars[i] = readChar(page, i);
+			}
+		}
+	}
+	
+	/**
+	 * Buffers one thread reuses for every glyph it reads: a pattern per grid
+	 * size, the coverage tables of the normalizer, the candidate lists of
+	 * the classifier and a mask for separating overlapping glyphs. The mask
+	 * only ever grows, to fit the largest glyph box its thread has seen.
+	 */
+	private static final class Scratch {
+		
+		/** The bounding box of the glyph being read. */
+		final Rectangle box = new Rectangle();
+		
+		/** The region of the mask holding the glyph being read. */
+		final Rectangle maskBox = new Rectangle();
+		
+		/** The coverage tables of GlyphNormalizer, for any grid size. */
+		final int[] cells = new int[GlyphNormalizer.TABLES * Glyph.MAX_SIZE];
+		
+		/** The templates surviving classification so far. */
+		final int[] survivors = new int[CANDIDATES];
+		
+		/** The distance of every surviving template from the glyph. */
+		final int[] distances = new int[CANDIDATES];
+		
+		/** The pattern of every grid size used so far, indexed by size. */
+		private final Glyph[] patterns = new Glyph[Glyph.MAX_SIZE + 1];
+		
+		/** The mask overlapping glyphs are separated into, or null. */
+		private BinaryImage mask;
+		
+		/**
+		 * Returns this thread's pattern on the <i>size</i> x <i>size</i> grid.
+		 */
+		Glyph pattern(int size) {
+			if (patterns[size] == null) {
+				patterns[size] = new Glyph(size);
+			}
+			return patterns[size];
+		}
+		
+		/**
+		 * Returns this thread's mask, grown to at least <i>width</i> x <i>height</i>.
+		 */
+		BinaryImage mask(int width, int height) {
+			if (mask == null || mask.getWidth() < width || mask.getHeight() < height) {
+				mask = new BinaryImage(Math.max(width, mask == null ? 0 : mask.getWidth()),
+						Math.max(height, mask == null ? 0 : mask.getHeight()));
+			}
+			return mask;
+		}
+	}
+}
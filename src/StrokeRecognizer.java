@@ -0,0 +1,359 @@
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StrokeRecognizer reads handwriting online, from the pen's trajectory as it
+ * is written rather than from a picture of it. Strokes arrive as streams of
+ * timestamped points (beginStroke, addPoint, endStroke); no image is drawn,
+ * encoded or decoded.
+ * 
+ * Strokes are grouped into characters as they are written: a stroke joins
+ * every character its horizontal extent overlaps, or, if it overlaps none,
+ * the previous character when it begins within PAUSE milliseconds of the
+ * end of the previous stroke and no more than a pen width to its side.
+ * Otherwise it starts a new character. Each character is classified by
+ * resampling its strokes at even spacing (half a cell of the finest grid)
+ * and quantizing the samples, widened by the pen's width, into a Glyph at
+ * every level of the Recognizer's pyramid: the same patterns, index and
+ * coarse-to-fine classification that read images. Only the character being
+ * written is classified again as points arrive; every other character keeps
+ * its last classification.
+ * 
+ * Characters are read left to right as a single line of text, with a space
+ * wherever the gap between two characters is at least 1/WORD_GAP of the
+ * height of the tallest character (as LayoutAnalyzer does for images).
+ */
+
+public class StrokeRecognizer {
+	
+	/** A quick stroke this close in time (in milliseconds) may join the previous character. */
+	private static final long PAUSE = 400;
+	
+	/** A gap of at least 1/WORD_GAP of the line height separates two words. */
+	private static final int WORD_GAP = 4;
+	
+	/** The Recognizer whose patterns characters are classified against. */
+	private final Recognizer recognizer;
+	
+	/** The width of the pen in pixels (the thickness of every stroke). */
+	private final int penWidth;
+	
+	/** The characters whose strokes are complete, in the order they were begun. */
+	private final List<Symbol> symbols = new ArrayList<>();
+	
+	/** The stroke being written, or null if the pen is up. */
+	private Stroke current;
+	
+	/** The time the last stroke ended, in milliseconds. */
+	private long lastEnd;
+	
+	/**
+	 * Constructs a new StrokeRecognizer with no strokes, classifying characters
+	 * with the patterns of <i>recognizer</i>.
+	 * 
+	 * @param recognizer The Recognizer to classify characters with.
+	 * @param penWidth The width of the pen in pixels.
+	 * @throws NullPointerException if recognizer is null.
+	 * @throws IllegalArgumentException if penWidth is not positive.
+	 */
+	public StrokeRecognizer(Recognizer recognizer, int penWidth) {
+		if (recognizer == null) {
+			throw new NullPointerException("Recognizer cannot be null...");
+		}
+		if (penWidth <= 0) {
+			throw new IllegalArgumentException("Pen width must be positive...");
+		}
+		this.recognizer = recognizer;
+		this.penWidth = penWidth;
+	}
+	
+	/**
+	 * Begins a new stroke at (<i>x</i>, <i>y</i>) at time <i>t</i>, ending
+	 * the stroke being written (if any) first.
+	 * 
+	 * @param x The column of the pen.
+	 * @param y The row of the pen.
+	 * @param t The time, in milliseconds.
+	 */
+	public void beginStroke(int x, int y, long t) {
+		if (current != null) {
+			endStroke();
+		}
+		current = new Stroke(t);
+		current.add(x, y);
+	}
+	
+	/**
+	 * Extends the stroke being written to (<i>x</i>, <i>y</i>), reached at
+	 * time <i>t</i>. Does nothing if no stroke is being written.
+	 * 
+	 * @param x The column of the pen.
+	 * @param y The row of the pen.
+	 * @param t The time, in milliseconds.
+	 */
+	public void addPoint(int x, int y, long t) {
+		if (current != null) {
+			current.add(x, y);
+			current.end = t;
+		}
+	}
+	
+	/**
+	 * Ends the stroke being written, adding it to the character it belongs
+	 * to. Does nothing if no stroke is being written.
+	 */
+	public void endStroke() {
+		if (current == null) {
+			return;
+		}
+		Symbol symbol = join(current);
+		symbols.removeAll(symbol.merged);
+		symbols.add(symbol);
+		lastEnd = current.end;
+		current = null;
+	}
+	
+	/**
+	 * Removes every stroke.
+	 */
+	public void clear() {
+		symbols.clear();
+		current = null;
+	}
+	
+	/**
+	 * Returns the text written so far, including the stroke being written.
+	 * 
+	 * @return the characters written, left to right.
+	 */
+	public String getText() {
+		List<Symbol> line = new ArrayList<>(symbols);
+		if (current != null) {
+			Symbol symbol = join(current);
+			line.removeAll(symbol.merged);
+			line.add(symbol);
+		}
+		if (line.isEmpty()) {
+			return "";
+		}
+		line.sort((a, b) -> Integer.compare(a.bounds.x, b.bounds.x));
+		int height = 0;
+		for (Symbol symbol : line) {
+			height = Math.max(height, symbol.bounds.height);
+		}
+		StringBuilder sb = new StringBuilder();
+		int right = line.get(0).bounds.x;
+		for (Symbol symbol : line) {
+			if (symbol.bounds.x - right >= Math.max(1, height / WORD_GAP)) {
+				sb.append(' ');
+			}
+			sb.append(symbol.getChar());
+			right = Math.max(right, symbol.bounds.x + symbol.bounds.width);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the character <i>stroke</i> belongs to: a new Symbol holding it
+	 * and the strokes of every completed character it joins (see above),
+	 * which are listed in its merged field.
+	 */
+	private Symbol join(Stroke stroke) {
+		Symbol symbol = new Symbol();
+		for (Symbol other : symbols) {
+			if (stroke.minX <= other.bounds.x + other.bounds.width - 1
+					&& other.bounds.x <= stroke.maxX) {
+				symbol.merge(other);
+			}
+		}
+		if (symbol.merged.isEmpty() && !symbols.isEmpty()) {
+			Symbol previous = symbols.get(symbols.size() - 1);
+			int gap = Math.max(stroke.minX - (previous.bounds.x + previous.bounds.width - 1),
+					previous.bounds.x - stroke.maxX);
+			if (stroke.start - lastEnd <= PAUSE && gap <= penWidth) {
+				symbol.merge(previous);
+			}
+		}
+		symbol.add(stroke);
+		return symbol;
+	}
+	
+	/**
+	 * A single stroke of the pen: the points it passed through, in order.
+	 */
+	private static class Stroke {
+		
+		/** The column of every point. */
+		private int[] xs = new int[16];
+		
+		/** The row of every point. */
+		private int[] ys = new int[16];
+		
+		/** The number of points. */
+		private int count;
+		
+		/** The leftmost column of any point. */
+		private int minX = Integer.MAX_VALUE;
+		
+		/** The topmost row of any point. */
+		private int minY = Integer.MAX_VALUE;
+		
+		/** The rightmost column of any point. */
+		private int maxX = Integer.MIN_VALUE;
+		
+		/** The bottommost row of any point. */
+		private int maxY = Integer.MIN_VALUE;
+		
+		/** The time the stroke began, in milliseconds. */
+		private final long start;
+		
+		/** The time the stroke last moved, in milliseconds. */
+		private long end;
+		
+		/** Constructs a new Stroke with no points, begun at time <i>t</i>. */
+		public Stroke(long t) {
+			this.start = t;
+			this.end = t;
+		}
+		
+		/** Appends the point (x, y). */
+		public void add(int x, int y) {
+			if (count == xs.length) {
+				xs = Arrays.copyOf(xs, count * 2);
+				ys = Arrays.copyOf(ys, count * 2);
+			}
+			xs[count] = x;
+			ys[count] = y;
+			count++;
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+	}
+	
+	/**
+	 * A character: the strokes written for it and (once classified) the
+	 * character they spell.
+	 */
+	private class Symbol {
+		
+		/** The strokes of the character. */
+		private final List<Stroke> strokes = new ArrayList<>();
+		
+		/** The completed characters this one was made from. */
+		private final List<Symbol> merged = new ArrayList<>();
+		
+		/** The bounds of the points of the strokes (without the pen's width). */
+		private final Rectangle bounds = new Rectangle();
+		
+		/** Whether the Symbol has any strokes yet. */
+		private boolean empty = true;
+		
+		/** The classification of the character, or 0 if it is not yet classified. */
+		private char c;
+		
+		/** Adds the strokes of <i>other</i> to this Symbol. */
+		public void merge(Symbol other) {
+			merged.add(other);
+			strokes.addAll(other.strokes);
+			include(other.bounds);
+		}
+		
+		/** Adds <i>stroke</i> to this Symbol. */
+		public void add(Stroke stroke) {
+			strokes.add(stroke);
+			include(new Rectangle(stroke.minX, stroke.minY,
+					stroke.maxX - stroke.minX + 1, stroke.maxY - stroke.minY + 1));
+		}
+		
+		/** Grows the bounds of this Symbol to include <i>box</i>. */
+		private void include(Rectangle box) {
+			if (empty) {
+				bounds.setBounds(box);
+				empty = false;
+			} else {
+				bounds.add(box);
+			}
+		}
+		
+		/** Returns the character this Symbol spells, classifying it on first use. */
+		public char getChar() {
+			if (c == 0) {
+				c = classify();
+			}
+			return c;
+		}
+		
+		/**
+		 * Returns the character the strokes of this Symbol spell, quantized into
+		 * a Glyph at every level of the Recognizer's pyramid.
+		 */
+		private char classify() {
+			// the glyph's box, widened by the pen and centered in a square
+			int r = penWidth / 2;
+			int x = bounds.x - r;
+			int y = bounds.y - r;
+			int w = bounds.width + 2 * r;
+			int h = bounds.height + 2 * r;
+			int side = Math.max(w, h);
+			x -= (side - w) / 2;
+			y -= (side - h) / 2;
+			
+			int levels = recognizer.getLevelCount();
+			Glyph[] pyramid = new Glyph[levels];
+			for (int l = 0; l < levels; l++) {
+				pyramid[l] = new Glyph(recognizer.getLevelSize(l));
+			}
+			double step = Math.max(0.5, side / (2.0 * recognizer.getLevelSize(levels - 1)));
+			for (Stroke stroke : strokes) {
+				stamp(pyramid, stroke.xs[0], stroke.ys[0], x, y, side, r);
+				// resample every segment at even spacing (carrying the remainder over)
+				double carry = 0;
+				for (int i = 1; i < stroke.count; i++) {
+					double dx = stroke.xs[i] - stroke.xs[i - 1];
+					double dy = stroke.ys[i] - stroke.ys[i - 1];
+					double length = Math.sqrt(dx * dx + dy * dy);
+					double d = step - carry;
+					for (; d <= length; d += step) {
+						stamp(pyramid, stroke.xs[i - 1] + dx * d / length,
+								stroke.ys[i - 1] + dy * d / length, x, y, side, r);
+					}
+					carry = length - (d - step);
+				}
+				stamp(pyramid, stroke.xs[stroke.count - 1], stroke.ys[stroke.count - 1], x, y, side, r);
+			}
+			return recognizer.classify(pyramid);
+		}
+	}
+	
+	/**
+	 * Sets, at every level of <i>pyramid</i>, the cells covered by a pen of
+	 * radius <i>r</i> at (<i>px</i>, <i>py</i>) within the square of
+	 * <i>side</i> pixels whose top left corner is (<i>x0</i>, <i>y0</i>).
+	 */
+	private static void stamp(Glyph[] pyramid, double px, double py, int x0, int y0, int side, int r) {
+		for (Glyph g : pyramid) {
+			int size = g.getSize();
+			int k0 = cell(px - r - x0, side, size);
+			int k1 = cell(px + r - x0, side, size);
+			int j0 = cell(py - r - y0, side, size);
+			int j1 = cell(py + r - y0, side, size);
+			for (int j = j0; j <= j1; j++) {
+				for (int k = k0; k <= k1; k++) {
+					g.set(k, j);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the cell of a grid of <i>size</i> cells over <i>side</i>
+	 * pixels holding the pixel offset <i>d</i>, clamped to the grid.
+	 */
+	private static int cell(double d, int side, int size) {
+		return Math.max(0, Math.min(size - 1, (int) (d * size / side)));
+	}
+}
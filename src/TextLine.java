@@ -0,0 +1,41 @@
+/**
+ * TextLine is one line of text found on a page: the glyphs of each word on
+ * the line, as indices into the ComponentLabeler the page was labeled with.
+ * Lines share nothing but that (read-only) labeling, so each can be
+ * recognized independently of the others.
+ */
+
+public class TextLine {
+	
+	/** The glyph indices of each word, words and glyphs ordered left to right. */
+	private final int[][] words;
+	
+	/**
+	 * Constructs a new TextLine.
+	 * 
+	 * @param words The glyph indices of each word, ordered left to right.
+	 * @requires words is non-null and is not modified afterwards.
+	 */
+	public TextLine(int[][] words) {
+		this.words = words;
+	}
+	
+	/**
+	 * Returns the number of words on this line.
+	 * 
+	 * @return the number of words.
+	 */
+	public int getWordCount() {
+		return words.length;
+	}
+	
+	/**
+	 * Returns the glyph indices of word <i>word</i>, ordered left to right.
+	 * 
+	 * @param word The index of the word, in [0, getWordCount()).
+	 * @return the glyphs of the word.
+	 */
+	public int[] getWord(int word) {
+		return words[word].clone();
+	}
+}
@@ -0,0 +1,104 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+/**
+ * AllocationCheck checks that Recognizer.readChar allocates nothing once the
+ * calling thread's scratch buffers have grown to fit the page, as measured by
+ * the JVM's per-thread allocation counter. Glyphs that overlap their
+ * neighbors (and so are separated through a mask) and languages matched
+ * coarse to fine on a finer grid are both covered. Run with
+ * <code>java AllocationCheck</code>; it exits with status 1 if any check
+ * fails.
+ */
+
+public class AllocationCheck {
+	
+	/** The text drawn on the page, italic so that some glyphs overlap. */
+	private static final String TEXT = "fjAVWy Tf abcdefg kmnopq 0123";
+	
+	/** The number of times every glyph is read before measuring. */
+	private static final int WARMUP = 20000;
+	
+	/** The number of times every glyph is read while measuring. */
+	private static final int ROUNDS = 1000;
+	
+	public static void main(String[] args) throws Exception {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			System.out.println("FAIL this JVM cannot count allocated bytes");
+			System.exit(1);
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		BufferedImage img = page();
+		boolean ok = true;
+		ok &= check(threads, "English", LanguageRegistry.get("English"), img);
+		ok &= check(threads, "32x32 grid", fineTable(), img);
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Reads every glyph of <i>img</i> with <i>characters</i> until warmed up,
+	 * then checks that reading them all ROUNDS more times allocates nothing.
+	 */
+	private static boolean check(com.sun.management.ThreadMXBean threads, String name,
+			GlyphIndex characters, BufferedImage img) {
+		Recognizer recognizer = new Recognizer(name, Color.WHITE, characters);
+		PageLayout page = recognizer.segment(recognizer.binarize(img));
+		int count = page.getGlyphCount();
+		int sum = 0;
+		for (int round = 0; round < WARMUP; round++) {
+			for (int i = 0; i < count; i++) {
+				sum += recognizer.readChar(page, i);
+			}
+		}
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int round = 0; round < ROUNDS; round++) {
+			for (int i = 0; i < count; i++) {
+				sum += recognizer.readChar(page, i);
+			}
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		boolean passed = allocated == 0 && count > 0;
+		System.out.println((passed ? "ok   " : "FAIL ") + name + ": " + allocated + " bytes over "
+				+ ROUNDS * count + " characters (checksum " + sum + ")");
+		return passed;
+	}
+	
+	/**
+	 * Returns a page of TEXT in an italic font.
+	 */
+	private static BufferedImage page() {
+		BufferedImage img = new BufferedImage(900, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = img.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, img.getWidth(), img.getHeight());
+		g.setColor(Color.BLACK);
+		g.setFont(new Font("Serif", Font.ITALIC, 40));
+		g.drawString(TEXT, 5, 70);
+		g.dispose();
+		return img;
+	}
+	
+	/**
+	 * Returns a table of the glyphs of TEXT drawn on the 32 x 32 grid, so
+	 * reading compares candidates at every level of a three-level pyramid.
+	 * Only the patterns matter here, so each is mapped to its position.
+	 */
+	private static GlyphTable fineTable() {
+		Recognizer recognizer = new Recognizer("", Color.WHITE, new GlyphTable());
+		PageLayout page = recognizer.segment(recognizer.binarize(page()));
+		GlyphTable table = new GlyphTable(32, page.getGlyphCount());
+		for (int i = 0; i < page.getGlyphCount(); i++) {
+			table.put(recognizer.normalize(page, i, 32), (char) ('A' + i));
+		}
+		return table;
+	}
+}
@@ -0,0 +1,86 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * BinarizerCheck checks that every image type is binarized as the rule
+ * img.getRGB(x, y) != background would binarize it, and that an estimated
+ * background agrees with the pixels the binarizer reads. Gray images are the
+ * type to watch: getRGB converts their color space, so any faster path must
+ * convert them the same way. Run with <code>java BinarizerCheck</code>; it
+ * exits with status 1 if any check fails.
+ */
+
+public class BinarizerCheck {
+	
+	/** The image types checked (the gray types are those ImageIO decodes gray PNGs and JPEGs to). */
+	private static final int[] TYPES = {
+		BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY, BufferedImage.TYPE_INT_RGB,
+		BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+		BufferedImage.TYPE_BYTE_INDEXED
+	};
+	
+	public static void main(String[] args) {
+		boolean ok = true;
+		for (int type : TYPES) {
+			BufferedImage img = scan(type);
+			int bg = img.getRGB(0, 0);
+			
+			// EXACT mode against the getRGB rule, every pixel
+			BinaryImage text = Binarizer.binarize(img, bg);
+			int wrong = 0;
+			for (int y = 0; y < img.getHeight(); y++) {
+				for (int x = 0; x < img.getWidth(); x++) {
+					if (text.isText(x, y) != (img.getRGB(x, y) != bg)) {
+						wrong++;
+					}
+				}
+			}
+			ok &= check(type, "exact", wrong == 0, wrong + " pixels differ from getRGB");
+			
+			// the estimated background is the color the binarizer sees
+			int estimate = BackgroundEstimator.estimate(img);
+			ok &= check(type, "estimate", estimate == bg, Integer.toHexString(estimate)
+					+ " instead of " + Integer.toHexString(bg));
+			
+			// and reading with it finds both strokes
+			Reader reader = new Reader();
+			reader.setAutoBackground(true);
+			for (Binarizer.Mode mode : Binarizer.Mode.values()) {
+				reader.setBinarization(mode);
+				String read = reader.read(img);
+				ok &= check(type, "auto " + mode, read.equals("1 1"), "read \"" + read + "\"");
+			}
+		}
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Returns a 200x100 image of the given type: two dark vertical strokes on
+	 * light gray paper.
+	 */
+	private static BufferedImage scan(int type) {
+		BufferedImage img = new BufferedImage(200, 100, type);
+		Graphics2D g = img.createGraphics();
+		g.setColor(new Color(200, 200, 200));
+		g.fillRect(0, 0, 200, 100);
+		g.setColor(new Color(30, 30, 30));
+		g.setStroke(new BasicStroke(4));
+		g.drawLine(50, 10, 50, 80);
+		g.drawLine(120, 10, 120, 80);
+		g.dispose();
+		return img;
+	}
+	
+	/**
+	 * Prints the outcome of one check and returns whether it passed.
+	 */
+	private static boolean check(int type, String name, boolean passed, String detail) {
+		System.out.println((passed ? "ok   " : "FAIL ") + "type " + type + " " + name
+				+ (passed ? "" : ": " + detail));
+		return passed;
+	}
+}